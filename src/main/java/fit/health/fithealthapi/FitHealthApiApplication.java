@@ -4,13 +4,19 @@ import fit.health.fithealthapi.services.OntologyService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Profiles;
 
 @SpringBootApplication(scanBasePackages = "fit.health.fithealthapi")
 public class FitHealthApiApplication {
     public static void main(String[] args) {
         System.out.println("Before SpringApplication.run");
         try {
-            SpringApplication.run(FitHealthApiApplication.class, args);
+            ConfigurableApplicationContext context = SpringApplication.run(FitHealthApiApplication.class, args);
+            if (context.getEnvironment().acceptsProfiles(Profiles.of("ingest"))) {
+                // Closing the context flushes the ontology to its file before the process exits
+                System.exit(SpringApplication.exit(context));
+            }
             System.out.println("SERVER running");
         } catch (Exception e) {
             e.printStackTrace();
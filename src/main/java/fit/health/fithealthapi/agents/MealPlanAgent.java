@@ -73,7 +73,7 @@ public class MealPlanAgent extends Agent {
             searchRequest.setMaxCalories(user.getDailyCalorieGoal());
             searchRequest.setGoal(user.getGoal());
 
-            List<Long> filteredRecipesIds = recipeService.searchRecipes(searchRequest).stream().map(Recipe::getId).toList();
+            List<Long> filteredRecipesIds = recipeService.searchRecipeIds(searchRequest);
         }
 
         private String serializeMealPlan(List<Recipe> recipes) {
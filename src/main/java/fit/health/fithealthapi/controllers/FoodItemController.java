@@ -5,6 +5,7 @@ import fit.health.fithealthapi.exceptions.IngredientNotFoundException;
 import fit.health.fithealthapi.model.FoodItem;
 import fit.health.fithealthapi.model.QueryParams;
 import fit.health.fithealthapi.model.User;
+import fit.health.fithealthapi.model.dto.NameSuggestion;
 import fit.health.fithealthapi.model.dto.SearchRequest;
 import fit.health.fithealthapi.model.enums.Allergen;
 import fit.health.fithealthapi.model.enums.DietaryPreference;
@@ -14,12 +15,15 @@ import fit.health.fithealthapi.services.FoodItemService;
 import fit.health.fithealthapi.services.SharedService;
 import fit.health.fithealthapi.services.UserService;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 
 import static fit.health.fithealthapi.utils.QueryParamParser.parse;
@@ -62,6 +66,35 @@ public class FoodItemController {
         return ResponseEntity.status(HttpStatus.CREATED).body(savedItem);
     }
 
+    /**
+     * Create many FoodItems at once, sent as a JSON array.
+     *
+     * @param foodItems The FoodItems to create.
+     * @return The number of FoodItems created, their IDs, and the rows that were rejected.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> createFoodItems(@RequestBody List<FoodItem> foodItems) {
+        User owner = userService.getUserByUsername(SecurityContextHolder.getContext().getAuthentication().getName());
+        if (owner == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid user");
+        }
+        return ResponseEntity.ok(foodService.saveFoodItems(foodItems, owner));
+    }
+
+    /**
+     * Create many FoodItems at once, sent as newline-delimited JSON with one FoodItem per line.
+     *
+     * @return The number of FoodItems created, their IDs, and the rows that were rejected.
+     */
+    @PostMapping(value = "/bulk", consumes = "application/x-ndjson")
+    public ResponseEntity<?> createFoodItemsFromNdjson(HttpServletRequest request) throws IOException {
+        User owner = userService.getUserByUsername(SecurityContextHolder.getContext().getAuthentication().getName());
+        if (owner == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid user");
+        }
+        return ResponseEntity.ok(foodService.saveFoodItems(request.getReader(), owner));
+    }
+
     /**
      * Get all FoodItems.
      *
@@ -77,6 +110,19 @@ public class FoodItemController {
         return ResponseEntity.ok(foodItemService.getAllWithFilters(params.getFilters(), params.getSortField(), params.getSortOrder(), params.getStart(), params.getEnd()));
     }
 
+    /**
+     * Suggest FoodItems whose name has a word starting with the typed text, most liked first.
+     *
+     * @param q The text typed so far.
+     * @param limit The number of suggestions, at most {@code suggest.max-results}.
+     * @return The suggested FoodItems.
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<NameSuggestion>> suggestFoodItems(@RequestParam("q") String q,
+                                                                 @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(foodService.suggest(q, limit));
+    }
+
     /**
      * Get a FoodItem by ID.
      *
@@ -6,6 +6,8 @@ import fit.health.fithealthapi.exceptions.RecipeNotFoundException;
 import fit.health.fithealthapi.model.QueryParams;
 import fit.health.fithealthapi.model.Recipe;
 import fit.health.fithealthapi.model.User;
+import fit.health.fithealthapi.model.dto.NameSuggestion;
+import fit.health.fithealthapi.model.dto.RecipeSearchPage;
 import fit.health.fithealthapi.model.dto.RecipeSearchRequest;
 import fit.health.fithealthapi.model.enums.*;
 import fit.health.fithealthapi.services.RecipeService;
@@ -52,6 +54,21 @@ public class RecipeController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdRecipe);
     }
 
+    /**
+     * Create many recipes at once, e.g. to migrate a recipe library.
+     *
+     * @param recipes The recipes to create, with their ingredients referring to existing food items by ID.
+     * @return The number of recipes created, their IDs, and the rows that were rejected.
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<?> createRecipes(@RequestBody List<Recipe> recipes) {
+        User owner = userService.getUserByUsername(SecurityContextHolder.getContext().getAuthentication().getName());
+        if (owner == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid user");
+        }
+        return ResponseEntity.ok(recipeService.saveRecipes(recipes, owner));
+    }
+
     /**
      * Get a recipe by ID.
      */
@@ -108,15 +125,24 @@ public class RecipeController {
     }
 
     @PostMapping("/search")
-    public ResponseEntity<List<Recipe>> searchRecipes(
+    public ResponseEntity<RecipeSearchPage> searchRecipes(
             @RequestBody RecipeSearchRequest searchRequest
     ) {
 
         searchRequest.setConditionSuitability(sharedService.convertToHealthConditionSuitability(searchRequest.getHealthConditions()));
-        List<Recipe> recipes = recipeService.searchRecipes(
+        RecipeSearchPage page = recipeService.searchRecipes(
               searchRequest
         );
-        return ResponseEntity.ok(recipes);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Suggest recipes whose name has a word starting with the typed text, most liked first.
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<NameSuggestion>> suggestRecipes(@RequestParam("q") String q,
+                                                               @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(recipeService.suggest(q, limit));
     }
 
     @GetMapping
@@ -0,0 +1,44 @@
+package fit.health.fithealthapi.interfeces;
+
+import fit.health.fithealthapi.model.dto.InferredPreferences;
+import fit.health.fithealthapi.services.ClassificationModule;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reasoner backend, selected with the {@code ontology.reasoner} property.
+ */
+public interface PreferenceReasoner {
+    /**
+     * @return The name the backend is selected by.
+     */
+    String getName();
+
+    /**
+     * @return The factory for the reasoner that answers superclass queries over the whole ontology.
+     */
+    OWLReasonerFactory getReasonerFactory();
+
+    /**
+     * Infers the dietary preferences and health condition suitabilities of a food item or recipe.
+     *
+     * @param item   The item class.
+     * @param module The axioms the classification of the item depends on.
+     */
+    InferredPreferences classify(OWLClass item, ClassificationModule module);
+
+    /**
+     * Infers the preferences of a batch of items, each over its own module. Backends that can share work
+     * between the items of a batch override this; by default they are classified one after the other.
+     *
+     * @param modules The axioms the classification of each item depends on, by item class.
+     */
+    default Map<OWLClass, InferredPreferences> classifyAll(Map<OWLClass, ClassificationModule> modules) {
+        Map<OWLClass, InferredPreferences> inferred = new LinkedHashMap<>();
+        modules.forEach((item, module) -> inferred.put(item, classify(item, module)));
+        return inferred;
+    }
+}
@@ -0,0 +1,36 @@
+package fit.health.fithealthapi.model;
+
+import fit.health.fithealthapi.model.enums.UserItemType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Number of likes and dislikes of an item, kept up to date from the user preferences so popularity can be read
+ * and sorted on without counting them.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "item_popularity", uniqueConstraints = @UniqueConstraint(columnNames = {"itemType", "itemId"}))
+public class ItemPopularity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private UserItemType itemType;
+
+    @Column(nullable = false)
+    private Long itemId;
+
+    private long likes;
+
+    private long dislikes;
+}
@@ -40,6 +40,14 @@ public class Macronutrients {
         this.salt += other.salt;
     }
 
+    public void subtract(Macronutrients other) {
+        this.calories -= other.calories;
+        this.protein -= other.protein;
+        this.fat -= other.fat;
+        this.sugar -= other.sugar;
+        this.salt -= other.salt;
+    }
+
     public void reset() {
         this.calories = 0f;
         this.protein = 0f;
@@ -88,7 +88,7 @@ public class Meal extends NutritionalProfile implements NutritionalSource, MealA
             }
         }
 
-        this.healthConditionSuitabilities = intersection;
+        setHealthConditionSuitabilities(intersection);
     }
 
 
@@ -112,7 +112,7 @@ public class Meal extends NutritionalProfile implements NutritionalSource, MealA
             }
         }
 
-        this.dietaryPreferences = common;
+        setDietaryPreferences(common);
     }
 
     /**
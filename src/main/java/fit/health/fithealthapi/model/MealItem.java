@@ -11,7 +11,6 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.util.HashSet;
 import java.util.Set;
 
 @Entity
@@ -51,22 +50,29 @@ public class MealItem extends NutritionalProfile{
 
         this.name = component.getName();
         this.verifiedByAdmin = component.isVerifiedByAdmin();
-        this.dietaryPreferences = new HashSet<>(component.getDietaryPreferences());
-        this.allergens = new HashSet<>(component.getAllergens());
-        this.healthConditionSuitabilities = new HashSet<>(component.getHealthConditionSuitabilities());
+        setDietaryPreferences(component.getDietaryPreferences());
+        setAllergens(component.getAllergens());
+        setHealthConditionSuitabilities(component.getHealthConditionSuitabilities());
     }
 
     private void setPreferences(String name, boolean verifiedByAdmin, Set<DietaryPreference> dietaryPreferences, Set<Allergen> allergens, Set<HealthConditionSuitability> healthConditionSuitability) {
         this.name = name;
         this.verifiedByAdmin = verifiedByAdmin;
-        this.dietaryPreferences = new HashSet<>(dietaryPreferences);
-        this.allergens = new HashSet<>(allergens);
-        this.healthConditionSuitabilities = new HashSet<>(healthConditionSuitability);
+        setDietaryPreferences(dietaryPreferences);
+        setAllergens(allergens);
+        setHealthConditionSuitabilities(healthConditionSuitability);
     }
 
     public void calculateMacronutrients() {
         if (component == null) return;
 
-        this.macronutrients = MacronutrientCalculator.calculate(component, portionSize, weightGrams);
+        Macronutrients calculated = MacronutrientCalculator.calculate(component, portionSize, weightGrams);
+        // Recalculated in place, so that the row of the previous values is not left behind
+        if (this.macronutrients == null) {
+            this.macronutrients = calculated;
+        } else {
+            this.macronutrients.reset();
+            this.macronutrients.add(calculated);
+        }
     }
 }
\ No newline at end of file
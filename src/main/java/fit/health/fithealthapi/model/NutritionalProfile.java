@@ -1,15 +1,19 @@
 package fit.health.fithealthapi.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import fit.health.fithealthapi.model.converters.EnumSetMaskConverter;
 import fit.health.fithealthapi.model.enums.Allergen;
 import fit.health.fithealthapi.model.enums.DietaryPreference;
 import fit.health.fithealthapi.model.enums.HealthConditionSuitability;
+import fit.health.fithealthapi.utils.EnumMasks;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.Set;
 
 @MappedSuperclass
@@ -27,22 +31,53 @@ public abstract class NutritionalProfile {
     @JoinColumn(name = "macronutrients_id", nullable = false)
     protected Macronutrients macronutrients;
 
-    @ElementCollection(fetch = FetchType.EAGER)
-    @Enumerated(EnumType.STRING)
-    protected Set<DietaryPreference> dietaryPreferences = new HashSet<>();
+    // Each set is stored as a bitmask column, so loading a profile needs no collection tables
+    @Convert(converter = EnumSetMaskConverter.DietaryPreferences.class)
+    @Column(name = "dietary_preferences_mask", nullable = false)
+    @ColumnDefault("0")
+    protected Set<DietaryPreference> dietaryPreferences = EnumSet.noneOf(DietaryPreference.class);
 
-    @ElementCollection(fetch = FetchType.EAGER)
-    @Enumerated(EnumType.STRING)
-    protected Set<Allergen> allergens = new HashSet<>();
+    @Convert(converter = EnumSetMaskConverter.Allergens.class)
+    @Column(name = "allergens_mask", nullable = false)
+    @ColumnDefault("0")
+    protected Set<Allergen> allergens = EnumSet.noneOf(Allergen.class);
 
-    @ElementCollection(fetch = FetchType.EAGER)
-    @Enumerated(EnumType.STRING)
-    protected Set<HealthConditionSuitability> healthConditionSuitabilities = new HashSet<>();
+    @Convert(converter = EnumSetMaskConverter.HealthConditionSuitabilities.class)
+    @Column(name = "health_condition_suitabilities_mask", nullable = false)
+    @ColumnDefault("0")
+    protected Set<HealthConditionSuitability> healthConditionSuitabilities = EnumSet.noneOf(HealthConditionSuitability.class);
 
     protected boolean verifiedByAdmin = false;
 
     @ManyToOne
     @JoinColumn(name = "owner_id", nullable = false)
     protected User owner;
+
+    public void setDietaryPreferences(Set<DietaryPreference> dietaryPreferences) {
+        this.dietaryPreferences = EnumMasks.copyOf(dietaryPreferences, DietaryPreference.class);
+    }
+
+    public void setAllergens(Set<Allergen> allergens) {
+        this.allergens = EnumMasks.copyOf(allergens, Allergen.class);
+    }
+
+    public void setHealthConditionSuitabilities(Set<HealthConditionSuitability> healthConditionSuitabilities) {
+        this.healthConditionSuitabilities = EnumMasks.copyOf(healthConditionSuitabilities, HealthConditionSuitability.class);
+    }
+
+    @JsonIgnore
+    public long getDietaryPreferencesMask() {
+        return EnumMasks.toMask(dietaryPreferences);
+    }
+
+    @JsonIgnore
+    public long getAllergensMask() {
+        return EnumMasks.toMask(allergens);
+    }
+
+    @JsonIgnore
+    public long getHealthConditionSuitabilitiesMask() {
+        return EnumMasks.toMask(healthConditionSuitabilities);
+    }
 }
 
@@ -1,6 +1,7 @@
 package fit.health.fithealthapi.model;
 
 import fit.health.fithealthapi.model.enums.RecipeType;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -22,5 +23,6 @@ public class RecipeTypeWrapper {
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "recipe_id")
+    @JsonIgnore
     private Recipe recipe;
 }
@@ -0,0 +1,53 @@
+package fit.health.fithealthapi.model.converters;
+
+import fit.health.fithealthapi.model.enums.Allergen;
+import fit.health.fithealthapi.model.enums.DietaryPreference;
+import fit.health.fithealthapi.model.enums.HealthConditionSuitability;
+import fit.health.fithealthapi.utils.EnumMasks;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Set;
+
+/**
+ * Persists a set of enum constants as a single bitmask column, see {@link EnumMasks}.
+ */
+public abstract class EnumSetMaskConverter<E extends Enum<E>> implements AttributeConverter<Set<E>, Long> {
+
+    private final Class<E> type;
+
+    protected EnumSetMaskConverter(Class<E> type) {
+        this.type = type;
+    }
+
+    @Override
+    public Long convertToDatabaseColumn(Set<E> values) {
+        return EnumMasks.toMask(values);
+    }
+
+    @Override
+    public Set<E> convertToEntityAttribute(Long mask) {
+        return EnumMasks.fromMask(mask == null ? 0 : mask, type);
+    }
+
+    @Converter
+    public static class DietaryPreferences extends EnumSetMaskConverter<DietaryPreference> {
+        public DietaryPreferences() {
+            super(DietaryPreference.class);
+        }
+    }
+
+    @Converter
+    public static class Allergens extends EnumSetMaskConverter<Allergen> {
+        public Allergens() {
+            super(Allergen.class);
+        }
+    }
+
+    @Converter
+    public static class HealthConditionSuitabilities extends EnumSetMaskConverter<HealthConditionSuitability> {
+        public HealthConditionSuitabilities() {
+            super(HealthConditionSuitability.class);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package fit.health.fithealthapi.model.dto;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: how many rows were read and created, and why the others were rejected.
+ * Rows are numbered from 0 in the order they were sent.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class BulkImportResult {
+    private int received;
+    private int created;
+    private List<Long> createdIds = new ArrayList<>();
+    private List<BulkImportError> errors = new ArrayList<>();
+
+    public void addCreated(Long id) {
+        created++;
+        createdIds.add(id);
+    }
+
+    public void addError(int row, String name, String message) {
+        errors.add(new BulkImportError(row, name, message));
+    }
+}
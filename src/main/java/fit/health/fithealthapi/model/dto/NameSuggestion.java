@@ -0,0 +1,16 @@
+package fit.health.fithealthapi.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class NameSuggestion {
+    private Long id;
+    private String name;
+    private long likes;
+}
@@ -0,0 +1,19 @@
+package fit.health.fithealthapi.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipeSearchPage {
+    private List<RecipeSummary> recipes = new ArrayList<>();
+    // Passed as the cursor of the next search to get the following page, null on the last page
+    private String nextCursor;
+}
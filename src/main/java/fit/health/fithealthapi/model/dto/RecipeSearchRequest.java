@@ -16,10 +16,15 @@ public class RecipeSearchRequest {
     private List<String> healthConditions = new ArrayList<>();
     private List<HealthConditionSuitability> conditionSuitability = new ArrayList<>();
     private List<String> ingredientNames = new ArrayList<>();
+    private List<Long> foodItemIds = new ArrayList<>();
+    // How the ingredients, by name or food item ID, are matched
+    private IngredientMatch ingredientMatch = IngredientMatch.AT_LEAST;
     private List<RecipeType> recipeTypes = new ArrayList<>();
     private Float minCalories;
     private Float maxCalories;
     private Float maxTotalTime;
     private Integer limit = 10;
+    // nextCursor of the previous page, null for the first page
+    private String cursor;
     private Goal goal;
 }
@@ -0,0 +1,36 @@
+package fit.health.fithealthapi.model.dto;
+
+import fit.health.fithealthapi.model.enums.RecipeType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * What recipe lists and searches show of a recipe, read without its ingredients. The tags are bitmasks over the
+ * ordinals of their enums (see {@link fit.health.fithealthapi.utils.EnumMasks}).
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipeSummary {
+    private Long id;
+    private String name;
+    private Float calories;
+    private Integer totalTime; // in minutes
+    private long dietaryPreferencesMask;
+    private long allergensMask;
+    private long healthConditionSuitabilitiesMask;
+    private long recipeTypesMask;
+    private long likes;
+
+    /**
+     * A summary as read by the repository, with one of the recipe's types, null if it has none, and no likes.
+     */
+    public RecipeSummary(Long id, String name, Float calories, Integer totalTime, Long dietaryPreferencesMask,
+                         Long allergensMask, Long healthConditionSuitabilitiesMask, RecipeType recipeType) {
+        this(id, name, calories, totalTime, dietaryPreferencesMask, allergensMask, healthConditionSuitabilitiesMask,
+                recipeType == null ? 0 : 1L << recipeType.ordinal(), 0);
+    }
+}
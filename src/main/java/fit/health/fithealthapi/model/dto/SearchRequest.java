@@ -11,6 +11,7 @@ import java.util.List;
 @Getter
 @Setter
 public class SearchRequest {
+    private String name;
     private List<DietaryPreference> dietaryPreferences;
     private List<Allergen> allergens;
     private List<String> healthConditions;
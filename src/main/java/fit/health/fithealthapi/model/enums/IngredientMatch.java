@@ -0,0 +1,11 @@
+package fit.health.fithealthapi.model.enums;
+
+/**
+ * How the ingredients of a recipe search are matched.
+ */
+public enum IngredientMatch {
+    // Recipes using every ingredient searched, and possibly others
+    AT_LEAST,
+    // Recipes whose ingredients are all among the ones searched, such as what can be cooked from a pantry
+    ONLY
+}
@@ -2,10 +2,16 @@ package fit.health.fithealthapi.repository;
 
 import fit.health.fithealthapi.model.FoodItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface FoodItemRepository extends JpaRepository<FoodItem, Long> {
     Optional<FoodItem> findByName(String name);
+
+    @Query("select f.id, f.name from FoodItem f")
+    List<Object[]> findAllIdsAndNames();
 }
\ No newline at end of file
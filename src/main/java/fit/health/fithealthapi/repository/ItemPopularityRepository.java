@@ -0,0 +1,19 @@
+package fit.health.fithealthapi.repository;
+
+import fit.health.fithealthapi.model.ItemPopularity;
+import fit.health.fithealthapi.model.enums.UserItemType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ItemPopularityRepository extends JpaRepository<ItemPopularity, Long> {
+
+    @Modifying
+    @Query("update ItemPopularity p set p.likes = p.likes + :likes, p.dislikes = p.dislikes + :dislikes " +
+            "where p.itemType = :itemType and p.itemId = :itemId")
+    int addCounts(@Param("itemType") UserItemType itemType, @Param("itemId") Long itemId,
+                  @Param("likes") long likes, @Param("dislikes") long dislikes);
+}
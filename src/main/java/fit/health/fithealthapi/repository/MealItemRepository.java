@@ -2,8 +2,18 @@ package fit.health.fithealthapi.repository;
 
 import fit.health.fithealthapi.model.MealItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface MealItemRepository extends JpaRepository<MealItem, Long> {
+    @Query("select i.meal.id, i.name from MealItem i")
+    List<Object[]> findAllMealIdsAndNames();
+
+    @Query("select i.id from MealItem i where i.component.id in :componentIds")
+    List<Long> findIdsByComponentIdIn(@Param("componentIds") Collection<Long> componentIds);
 }
@@ -3,13 +3,24 @@ package fit.health.fithealthapi.repository;
 import fit.health.fithealthapi.model.Meal;
 import fit.health.fithealthapi.model.User;
 import fit.health.fithealthapi.model.enums.Visibility;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface MealRepository extends JpaRepository<Meal, Long> {
     List<Meal> findByOwner(User user);
     List<Meal> findByVisibility(Visibility visibility);
+
+    @EntityGraph(attributePaths = {"macronutrients", "mealItems.macronutrients"})
+    @Query("select m from Meal m where m.id in :ids")
+    List<Meal> findAllWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select m.id, m.name from Meal m")
+    List<Object[]> findAllIdsAndNames();
 }
@@ -1,13 +1,44 @@
 package fit.health.fithealthapi.repository;
 
 import fit.health.fithealthapi.model.Recipe;
+import fit.health.fithealthapi.model.dto.RecipeSummary;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 @Repository
 public interface RecipeRepository extends JpaRepository<Recipe, Long> {
     HashSet<Recipe> findByIdIn(Set<Long> Id);
-}
\ No newline at end of file
+
+    @Query("select distinct r from Recipe r left join fetch r.ingredients i left join fetch i.foodItem")
+    List<Recipe> findAllWithIngredients();
+
+    /**
+     * Loads the recipes with everything a response shows of them, ingredients and their food items included,
+     * in a single query instead of one more per recipe and ingredient.
+     */
+    @EntityGraph(attributePaths = {"macronutrients", "owner", "recipeTypeWrappers",
+            "ingredients.foodItem.macronutrients", "ingredients.foodItem.owner"})
+    @Query("select r from Recipe r where r.id in :ids")
+    List<Recipe> findAllWithDetailsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Reads the summaries of the recipes, one per recipe type of each recipe with only that type in its mask. The
+     * tags are read straight from their mask columns.
+     */
+    @Query("select new fit.health.fithealthapi.model.dto.RecipeSummary(r.id, r.name, m.calories, " +
+            "r.preparationTime + r.cookingTime, cast(r.dietaryPreferences as Long), cast(r.allergens as Long), " +
+            "cast(r.healthConditionSuitabilities as Long), w.type) from Recipe r join r.macronutrients m " +
+            "left join r.recipeTypeWrappers w where r.id in :ids")
+    List<RecipeSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select r.id, r.name from Recipe r")
+    List<Object[]> findAllIdsAndNames();
+}
@@ -5,6 +5,7 @@ import fit.health.fithealthapi.model.UserPreference;
 import fit.health.fithealthapi.model.enums.PreferenceType;
 import fit.health.fithealthapi.model.enums.UserItemType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.Optional;
@@ -15,5 +16,9 @@ public interface UserPreferenceRepository extends JpaRepository<UserPreference,
 
     int countByItemTypeAndItemIdAndPreferenceType(UserItemType itemType, Long itemId, PreferenceType preferenceType);
 
+    @Query("select p.itemType, p.itemId, p.preferenceType, count(p) from UserPreference p " +
+            "group by p.itemType, p.itemId, p.preferenceType")
+    List<Object[]> countAllByItemAndPreferenceType();
+
     List<UserPreference> findByUserAndPreferenceTypeAndItemType(User user, PreferenceType type, UserItemType itemType);
 }
@@ -0,0 +1,35 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.enums.DietaryPreference;
+import fit.health.fithealthapi.model.enums.HealthConditionSuitability;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The part of the ontology a food item or recipe is classified in.
+ *
+ * @param vocabulary                        Every axiom that does not define a food item or recipe. The same
+ *                                          instance is handed out until one of these axioms changes.
+ * @param itemAxioms                        The definitions of the item and of the items it refers to.
+ * @param dietaryPreferenceClasses          The classes backing each dietary preference.
+ * @param healthConditionSuitabilityClasses The classes backing each health condition suitability.
+ */
+public record ClassificationModule(Set<OWLAxiom> vocabulary,
+                                   Set<OWLAxiom> itemAxioms,
+                                   Map<OWLClass, DietaryPreference> dietaryPreferenceClasses,
+                                   Map<OWLClass, HealthConditionSuitability> healthConditionSuitabilityClasses) {
+
+    public Set<OWLAxiom> getAxioms() {
+        Set<OWLAxiom> axioms = new HashSet<>(vocabulary);
+        axioms.addAll(itemAxioms);
+        return axioms;
+    }
+
+    public int size() {
+        return vocabulary.size() + itemAxioms.size();
+    }
+}
@@ -0,0 +1,435 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.interfeces.PreferenceReasoner;
+import fit.health.fithealthapi.model.dto.InferredPreferences;
+import fit.health.fithealthapi.model.enums.DietaryPreference;
+import fit.health.fithealthapi.model.enums.HealthConditionSuitability;
+import org.semanticweb.HermiT.Reasoner;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+import org.semanticweb.owlapi.vocab.OWLFacet;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Evaluates the defined preference classes as Java predicates instead of running a tableau reasoner.
+ * The definitions in the vocabulary are compiled once into {@link Condition}s, and an item is tested against
+ * them using the values, allergens and ingredients asserted in its own definition. The evaluation follows
+ * what HermiT entails for the shapes of definitions this ontology uses:
+ * <ul>
+ *     <li>a data range restriction holds when one of the item's values is inside the range,</li>
+ *     <li>a negated data restriction never holds, as the data properties are not functional,</li>
+ *     <li>{@code not (hasAllergen some X)} holds when the item's allergen is disjoint from X, as
+ *     {@code hasAllergen} is functional,</li>
+ *     <li>{@code hasIngredient only X} holds when every ingredient the recipe is restricted to satisfies X,</li>
+ *     <li>an item with contradicting allergens is unsatisfiable and belongs to every class.</li>
+ * </ul>
+ * Anything outside of these shapes evaluates to false, so the evaluator never infers more than HermiT.
+ * Superclass queries over the whole ontology still go to HermiT.
+ */
+@Component
+public class CompiledPreferenceReasoner implements PreferenceReasoner {
+
+    private final OWLReasonerFactory reasonerFactory = new Reasoner.ReasonerFactory();
+
+    private volatile Vocabulary compiled;
+
+    @Override
+    public String getName() {
+        return "compiled";
+    }
+
+    @Override
+    public OWLReasonerFactory getReasonerFactory() {
+        return reasonerFactory;
+    }
+
+    @Override
+    public InferredPreferences classify(OWLClass item, ClassificationModule module) {
+        return classifyAll(Map.of(item, module)).get(item);
+    }
+
+    /**
+     * Evaluates the whole batch at once, so that the facts of an ingredient shared by several items are only
+     * derived once. The modules of a batch are extracted together and share their vocabulary.
+     */
+    @Override
+    public Map<OWLClass, InferredPreferences> classifyAll(Map<OWLClass, ClassificationModule> modules) {
+        if (modules.isEmpty()) {
+            return Map.of();
+        }
+        ClassificationModule first = modules.values().iterator().next();
+        Vocabulary vocabulary = compiled;
+        if (vocabulary == null || vocabulary.source != first.vocabulary()) {
+            vocabulary = new Vocabulary(first.vocabulary());
+            compiled = vocabulary;
+        }
+        Set<OWLAxiom> itemAxioms = new HashSet<>();
+        modules.values().forEach(module -> itemAxioms.addAll(module.itemAxioms()));
+        Evaluation evaluation = new Evaluation(vocabulary, itemAxioms);
+
+        Map<OWLClass, InferredPreferences> inferred = new LinkedHashMap<>();
+        for (OWLClass item : modules.keySet()) {
+            ItemFacts facts = evaluation.facts(item);
+            Set<DietaryPreference> dietaryPreferences = EnumSet.noneOf(DietaryPreference.class);
+            first.dietaryPreferenceClasses().forEach((owlClass, preference) -> {
+                if (evaluation.holds(owlClass, facts)) {
+                    dietaryPreferences.add(preference);
+                }
+            });
+            Set<HealthConditionSuitability> healthConditionSuitabilities = EnumSet.noneOf(HealthConditionSuitability.class);
+            first.healthConditionSuitabilityClasses().forEach((owlClass, suitability) -> {
+                if (evaluation.holds(owlClass, facts)) {
+                    healthConditionSuitabilities.add(suitability);
+                }
+            });
+            inferred.put(item, new InferredPreferences(Collections.unmodifiableSet(dietaryPreferences),
+                    Collections.unmodifiableSet(healthConditionSuitabilities)));
+        }
+        return inferred;
+    }
+
+    /**
+     * A compiled class expression.
+     */
+    @FunctionalInterface
+    private interface Condition {
+        boolean test(ItemFacts item, Evaluation evaluation);
+    }
+
+    /**
+     * What an item's definition asserts, in the form the conditions test.
+     */
+    private static final class ItemFacts {
+        private final OWLClass owlClass;
+        private final Set<OWLClass> superClasses = new HashSet<>();
+        private final Map<OWLDataPropertyExpression, Set<OWLLiteral>> values = new HashMap<>();
+        private final Map<OWLObjectPropertyExpression, Set<OWLClassExpression>> someValues = new HashMap<>();
+        // Each "only" restriction, as the set of alternatives its filler allows
+        private final Map<OWLObjectPropertyExpression, List<Set<OWLClassExpression>>> onlyValues = new HashMap<>();
+        private boolean unsatisfiable;
+
+        private ItemFacts(OWLClass owlClass) {
+            this.owlClass = owlClass;
+        }
+
+        private void assertExpression(OWLClassExpression expression) {
+            if (expression instanceof OWLClass named) {
+                superClasses.add(named);
+            } else if (expression instanceof OWLObjectIntersectionOf intersection) {
+                intersection.getOperands().forEach(this::assertExpression);
+            } else if (expression instanceof OWLDataHasValue hasValue) {
+                values.computeIfAbsent(hasValue.getProperty(), property -> new HashSet<>()).add(hasValue.getValue());
+            } else if (expression instanceof OWLObjectSomeValuesFrom someValuesFrom) {
+                someValues.computeIfAbsent(someValuesFrom.getProperty(), property -> new HashSet<>()).add(someValuesFrom.getFiller());
+            } else if (expression instanceof OWLObjectAllValuesFrom allValuesFrom) {
+                OWLClassExpression filler = allValuesFrom.getFiller();
+                Set<OWLClassExpression> alternatives = filler instanceof OWLObjectUnionOf union ? union.getOperands()
+                        : filler.isOWLNothing() ? Collections.emptySet() : Set.of(filler);
+                onlyValues.computeIfAbsent(allValuesFrom.getProperty(), property -> new ArrayList<>()).add(alternatives);
+            }
+        }
+    }
+
+    /**
+     * The compiled vocabulary: definitions, the asserted hierarchy, disjointness and functional properties.
+     */
+    private static final class Vocabulary {
+        private final Set<OWLAxiom> source;
+        private final Map<OWLClass, List<OWLClassExpression>> definitions = new HashMap<>();
+        private final Map<OWLClass, List<OWLClassExpression>> superClassExpressions = new HashMap<>();
+        private final Map<OWLClass, Set<OWLClass>> subClasses = new HashMap<>();
+        private final Set<Set<OWLClass>> disjointPairs = new HashSet<>();
+        private final Set<OWLObjectPropertyExpression> functionalProperties = new HashSet<>();
+        private final Map<OWLClass, Condition> conditions = new ConcurrentHashMap<>();
+
+        private Vocabulary(Set<OWLAxiom> source) {
+            this.source = source;
+            for (OWLAxiom axiom : source) {
+                if (axiom instanceof OWLEquivalentClassesAxiom equivalence) {
+                    for (OWLClass named : equivalence.getNamedClasses()) {
+                        for (OWLClassExpression expression : equivalence.getClassExpressionsMinus(named)) {
+                            definitions.computeIfAbsent(named, owlClass -> new ArrayList<>()).add(expression);
+                            if (expression instanceof OWLClass other) {
+                                subClasses.computeIfAbsent(named, owlClass -> new HashSet<>()).add(other);
+                            }
+                        }
+                    }
+                } else if (axiom instanceof OWLSubClassOfAxiom subClassOf && !subClassOf.getSubClass().isAnonymous()) {
+                    OWLClass subClass = subClassOf.getSubClass().asOWLClass();
+                    superClassExpressions.computeIfAbsent(subClass, owlClass -> new ArrayList<>()).add(subClassOf.getSuperClass());
+                    if (subClassOf.getSuperClass() instanceof OWLClass superClass) {
+                        subClasses.computeIfAbsent(superClass, owlClass -> new HashSet<>()).add(subClass);
+                    }
+                } else if (axiom instanceof OWLDisjointClassesAxiom disjoint) {
+                    List<OWLClass> named = disjoint.getClassExpressions().stream()
+                            .filter(expression -> !expression.isAnonymous())
+                            .map(OWLClassExpression::asOWLClass)
+                            .toList();
+                    for (int i = 0; i < named.size(); i++) {
+                        for (int j = i + 1; j < named.size(); j++) {
+                            disjointPairs.add(Set.of(named.get(i), named.get(j)));
+                        }
+                    }
+                } else if (axiom instanceof OWLFunctionalObjectPropertyAxiom functional) {
+                    functionalProperties.add(functional.getProperty());
+                }
+            }
+        }
+
+        private Condition condition(OWLClass owlClass) {
+            return conditions.computeIfAbsent(owlClass, named -> {
+                List<Condition> alternatives = definitions.getOrDefault(named, List.of()).stream()
+                        .map(this::compile)
+                        .toList();
+                return (item, evaluation) -> alternatives.stream().anyMatch(condition -> condition.test(item, evaluation));
+            });
+        }
+
+        private Condition compile(OWLClassExpression expression) {
+            if (expression.isOWLThing()) {
+                return (item, evaluation) -> true;
+            }
+            if (expression instanceof OWLClass named) {
+                return (item, evaluation) -> evaluation.holds(named, item);
+            }
+            if (expression instanceof OWLObjectIntersectionOf intersection) {
+                List<Condition> operands = intersection.getOperands().stream().map(this::compile).toList();
+                return (item, evaluation) -> operands.stream().allMatch(condition -> condition.test(item, evaluation));
+            }
+            if (expression instanceof OWLObjectUnionOf union) {
+                List<Condition> operands = union.getOperands().stream().map(this::compile).toList();
+                return (item, evaluation) -> operands.stream().anyMatch(condition -> condition.test(item, evaluation));
+            }
+            if (expression instanceof OWLDataSomeValuesFrom someValuesFrom) {
+                OWLDataPropertyExpression property = someValuesFrom.getProperty();
+                OWLDataRange range = someValuesFrom.getFiller();
+                return (item, evaluation) -> item.values.getOrDefault(property, Set.of()).stream()
+                        .anyMatch(value -> inRange(value, range));
+            }
+            if (expression instanceof OWLDataHasValue hasValue) {
+                OWLDataPropertyExpression property = hasValue.getProperty();
+                OWLLiteral expected = hasValue.getValue();
+                return (item, evaluation) -> item.values.getOrDefault(property, Set.of()).stream()
+                        .anyMatch(value -> sameValue(value, expected));
+            }
+            if (expression instanceof OWLObjectSomeValuesFrom someValuesFrom && someValuesFrom.getFiller() instanceof OWLClass filler) {
+                OWLObjectPropertyExpression property = someValuesFrom.getProperty();
+                return (item, evaluation) -> item.someValues.getOrDefault(property, Set.of()).stream()
+                        .anyMatch(value -> value instanceof OWLClass named && superClassClosure(named).contains(filler));
+            }
+            if (expression instanceof OWLObjectAllValuesFrom allValuesFrom) {
+                OWLObjectPropertyExpression property = allValuesFrom.getProperty();
+                Condition filler = compile(allValuesFrom.getFiller());
+                return (item, evaluation) -> item.onlyValues.getOrDefault(property, List.of()).stream()
+                        .anyMatch(alternatives -> alternatives.stream()
+                                .allMatch(alternative -> alternative instanceof OWLClass named
+                                        && filler.test(evaluation.facts(named), evaluation)));
+            }
+            if (expression instanceof OWLObjectComplementOf complement
+                    && complement.getOperand() instanceof OWLObjectSomeValuesFrom someValuesFrom
+                    && someValuesFrom.getFiller() instanceof OWLClass filler) {
+                OWLObjectPropertyExpression property = someValuesFrom.getProperty();
+                return (item, evaluation) -> excludes(item, property, filler);
+            }
+            // Negated data restrictions and every other shape are never entailed for the items of this ontology
+            return (item, evaluation) -> false;
+        }
+
+        /**
+         * Whether no value of the property can be an instance of the class: the only value of a functional
+         * property is disjoint from it, or every alternative an "only" restriction allows is.
+         */
+        private boolean excludes(ItemFacts item, OWLObjectPropertyExpression property, OWLClass owlClass) {
+            if (functionalProperties.contains(property)) {
+                for (OWLClassExpression value : item.someValues.getOrDefault(property, Set.of())) {
+                    if (value instanceof OWLClass named && disjoint(named, owlClass)) {
+                        return true;
+                    }
+                }
+            }
+            return item.onlyValues.getOrDefault(property, List.of()).stream()
+                    .anyMatch(alternatives -> alternatives.stream()
+                            .allMatch(alternative -> alternative instanceof OWLClass named && disjoint(named, owlClass)));
+        }
+
+        private boolean disjoint(OWLClass first, OWLClass second) {
+            for (OWLClass firstSuper : superClassClosure(first)) {
+                for (OWLClass secondSuper : superClassClosure(second)) {
+                    if (firstSuper.isOWLNothing() || secondSuper.isOWLNothing()
+                            || (!firstSuper.equals(secondSuper) && disjointPairs.contains(Set.of(firstSuper, secondSuper)))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * The class and its asserted named superclasses, transitively.
+         */
+        private Set<OWLClass> superClassClosure(OWLClass owlClass) {
+            Set<OWLClass> closure = new HashSet<>();
+            Deque<OWLClass> pending = new ArrayDeque<>(List.of(owlClass));
+            while (!pending.isEmpty()) {
+                OWLClass current = pending.pop();
+                if (closure.add(current)) {
+                    for (OWLClassExpression superClass : superClassExpressions.getOrDefault(current, List.of())) {
+                        if (superClass instanceof OWLClass named) {
+                            pending.push(named);
+                        }
+                    }
+                    for (OWLClassExpression definition : definitions.getOrDefault(current, List.of())) {
+                        if (definition instanceof OWLClass named) {
+                            pending.push(named);
+                        }
+                    }
+                }
+            }
+            return closure;
+        }
+
+        private static boolean inRange(OWLLiteral value, OWLDataRange range) {
+            if (range instanceof OWLDatatype) {
+                return true;
+            }
+            if (!(range instanceof OWLDatatypeRestriction restriction) || !isNumeric(value)) {
+                return false;
+            }
+            double number = Double.parseDouble(value.getLiteral());
+            for (OWLFacetRestriction facet : restriction.getFacetRestrictions()) {
+                double bound = Double.parseDouble(facet.getFacetValue().getLiteral());
+                // Compare as floats, the precision the values and bounds are declared with
+                int comparison = Float.compare((float) number, (float) bound);
+                boolean satisfied = switch (facet.getFacet()) {
+                    case MIN_EXCLUSIVE -> comparison > 0;
+                    case MIN_INCLUSIVE -> comparison >= 0;
+                    case MAX_EXCLUSIVE -> comparison < 0;
+                    case MAX_INCLUSIVE -> comparison <= 0;
+                    default -> false;
+                };
+                if (!satisfied) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean sameValue(OWLLiteral value, OWLLiteral expected) {
+            if (isNumeric(value) && isNumeric(expected)) {
+                return Float.compare(Float.parseFloat(value.getLiteral()), Float.parseFloat(expected.getLiteral())) == 0;
+            }
+            return value.equals(expected);
+        }
+
+        private static boolean isNumeric(OWLLiteral literal) {
+            return literal.isFloat() || literal.isDouble() || literal.isInteger()
+                    || literal.getDatatype().getIRI().toString().endsWith("#int")
+                    || literal.getDatatype().getIRI().toString().endsWith("#decimal");
+        }
+    }
+
+    /**
+     * State of one classification: the facts of the item and its ingredients, and the tests in progress,
+     * which evaluate to false when reached again through a cyclic definition.
+     */
+    private static final class Evaluation {
+        private final Vocabulary vocabulary;
+        private final Map<OWLClass, List<OWLClassExpression>> itemDefinitions = new HashMap<>();
+        private final Map<OWLClass, ItemFacts> facts = new HashMap<>();
+        private final Set<List<OWLClass>> inProgress = new HashSet<>();
+
+        private Evaluation(Vocabulary vocabulary, Set<OWLAxiom> itemAxioms) {
+            this.vocabulary = vocabulary;
+            for (OWLAxiom axiom : itemAxioms) {
+                if (axiom instanceof OWLSubClassOfAxiom subClassOf && !subClassOf.getSubClass().isAnonymous()) {
+                    itemDefinitions.computeIfAbsent(subClassOf.getSubClass().asOWLClass(), owlClass -> new ArrayList<>())
+                            .add(subClassOf.getSuperClass());
+                } else if (axiom instanceof OWLEquivalentClassesAxiom equivalence) {
+                    for (OWLClass named : equivalence.getNamedClasses()) {
+                        itemDefinitions.computeIfAbsent(named, owlClass -> new ArrayList<>())
+                                .addAll(equivalence.getClassExpressionsMinus(named));
+                    }
+                }
+            }
+        }
+
+        private ItemFacts facts(OWLClass owlClass) {
+            ItemFacts existing = facts.get(owlClass);
+            if (existing != null) {
+                return existing;
+            }
+            ItemFacts itemFacts = new ItemFacts(owlClass);
+            facts.put(owlClass, itemFacts);
+            List<OWLClassExpression> asserted = new ArrayList<>(itemDefinitions.getOrDefault(owlClass, List.of()));
+            asserted.addAll(vocabulary.superClassExpressions.getOrDefault(owlClass, List.of()));
+            asserted.forEach(itemFacts::assertExpression);
+
+            Set<OWLClass> closure = new HashSet<>();
+            for (OWLClass superClass : new ArrayList<>(itemFacts.superClasses)) {
+                closure.addAll(vocabulary.superClassClosure(superClass));
+            }
+            itemFacts.superClasses.addAll(closure);
+            itemFacts.superClasses.add(owlClass);
+            itemFacts.unsatisfiable = isUnsatisfiable(itemFacts);
+            return itemFacts;
+        }
+
+        private boolean isUnsatisfiable(ItemFacts item) {
+            List<OWLClass> superClasses = new ArrayList<>(item.superClasses);
+            for (int i = 0; i < superClasses.size(); i++) {
+                if (superClasses.get(i).isOWLNothing()) {
+                    return true;
+                }
+                for (int j = i + 1; j < superClasses.size(); j++) {
+                    if (vocabulary.disjointPairs.contains(Set.of(superClasses.get(i), superClasses.get(j)))) {
+                        return true;
+                    }
+                }
+            }
+            for (OWLObjectPropertyExpression property : vocabulary.functionalProperties) {
+                List<OWLClass> values = item.someValues.getOrDefault(property, Set.of()).stream()
+                        .filter(value -> !value.isAnonymous())
+                        .map(OWLClassExpression::asOWLClass)
+                        .toList();
+                for (int i = 0; i < values.size(); i++) {
+                    for (int j = i + 1; j < values.size(); j++) {
+                        if (vocabulary.disjoint(values.get(i), values.get(j))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Whether the item is an instance of the named class: it is asserted, the class's definition holds,
+         * or one of its asserted subclasses holds.
+         */
+        private boolean holds(OWLClass owlClass, ItemFacts item) {
+            if (item.unsatisfiable || item.superClasses.contains(owlClass)) {
+                return true;
+            }
+            List<OWLClass> test = List.of(owlClass, item.owlClass);
+            if (!inProgress.add(test)) {
+                return false;
+            }
+            try {
+                if (vocabulary.condition(owlClass).test(item, this)) {
+                    return true;
+                }
+                for (OWLClass subClass : vocabulary.subClasses.getOrDefault(owlClass, Set.of())) {
+                    if (holds(subClass, item)) {
+                        return true;
+                    }
+                }
+                return false;
+            } finally {
+                inProgress.remove(test);
+            }
+        }
+    }
+}
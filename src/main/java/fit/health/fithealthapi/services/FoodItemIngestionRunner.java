@@ -0,0 +1,258 @@
+package fit.health.fithealthapi.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fit.health.fithealthapi.model.FoodItem;
+import fit.health.fithealthapi.model.Macronutrients;
+import fit.health.fithealthapi.model.User;
+import fit.health.fithealthapi.model.dto.BulkImportError;
+import fit.health.fithealthapi.model.dto.BulkImportResult;
+import fit.health.fithealthapi.model.enums.Allergen;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Seeds the food catalogue from a nutrition table when the application is started with the {@code ingest}
+ * profile, after which the application exits with the code of the ingestion. The file is read line by line by a reader thread that hands
+ * chunks of {@code ingest.chunk-size} rows to the importing thread through a queue of
+ * {@code ingest.queue-capacity} chunks; the reader blocks while the queue is full, so only a few chunks are
+ * ever held in memory whatever the size of the file. Each chunk goes through
+ * {@link FoodItemService#saveFoodItems(List, User)}, the same path as the bulk endpoint.
+ * <p>
+ * CSV files need a header row with the columns {@code name}, {@code calories}, {@code protein}, {@code fat},
+ * {@code sugar}, {@code salt} and optionally {@code allergens}, separated by {@code |}. NDJSON files hold one
+ * FoodItem per line, as accepted by {@code POST /food-items/bulk}.
+ */
+@Component
+@Profile("ingest")
+public class FoodItemIngestionRunner implements ApplicationRunner, ExitCodeGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(FoodItemIngestionRunner.class.getName());
+    private static final List<String> CSV_COLUMNS = List.of("name", "calories", "protein", "fat", "sugar", "salt");
+    // Tells the importing thread that the reader is done
+    private static final Chunk END = new Chunk(List.of(), List.of());
+
+    private final FoodItemService foodItemService;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final String file;
+    private final String format;
+    private final String ownerUsername;
+    private final int chunkSize;
+    private final int queueCapacity;
+    private volatile int exitCode;
+
+    public FoodItemIngestionRunner(FoodItemService foodItemService, UserService userService, ObjectMapper objectMapper,
+                                   @Value("${ingest.file}") String file,
+                                   @Value("${ingest.format:}") String format,
+                                   @Value("${ingest.owner}") String ownerUsername,
+                                   @Value("${ingest.chunk-size:2000}") int chunkSize,
+                                   @Value("${ingest.queue-capacity:2}") int queueCapacity) {
+        this.foodItemService = foodItemService;
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.file = file;
+        this.format = format.isBlank() ? (file.toLowerCase().endsWith(".csv") ? "csv" : "ndjson") : format.toLowerCase();
+        this.ownerUsername = ownerUsername;
+        this.chunkSize = chunkSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        User owner = userService.getUserByUsername(ownerUsername);
+        BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicReference<Exception> readFailure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                read(chunks, rejected);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                readFailure.set(e);
+            } finally {
+                try {
+                    chunks.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "food-item-ingest-reader");
+
+        long startTime = System.nanoTime();
+        int created = 0;
+        int received = 0;
+        reader.start();
+        try {
+            for (Chunk chunk = chunks.take(); chunk != END; chunk = chunks.take()) {
+                BulkImportResult result = foodItemService.saveFoodItems(chunk.foodItems(), owner);
+                for (BulkImportError error : result.getErrors()) {
+                    LOGGER.warning("Row " + chunk.rows().get(error.getRow()) + " (" + error.getName() + ") rejected: "
+                            + error.getMessage());
+                }
+                created += result.getCreated();
+                received += chunk.foodItems().size();
+                rejected.addAndGet(result.getErrors().size());
+                LOGGER.info("Ingested " + created + " food items from " + file + ", up to row "
+                        + chunk.rows().get(chunk.rows().size() - 1) + ", in "
+                        + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+            }
+        } finally {
+            reader.interrupt();
+        }
+
+        if (readFailure.get() != null) {
+            LOGGER.log(Level.SEVERE, "Ingestion of " + file + " stopped after " + received + " rows", readFailure.get());
+        }
+        LOGGER.info("Ingestion of " + file + " finished: " + created + " food items created, " + rejected.get()
+                + " rows rejected, in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+        exitCode = readFailure.get() != null ? 1 : 0;
+    }
+
+    /**
+     * The exit code of the ingestion, 1 if the file could not be read to the end, returned by the application
+     * once the context is closed.
+     */
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    private void read(BlockingQueue<Chunk> chunks, AtomicInteger rejected) throws IOException, InterruptedException {
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+            Map<String, Integer> columns = "csv".equals(format) ? readHeader(reader.readLine()) : null;
+            List<FoodItem> foodItems = new ArrayList<>(chunkSize);
+            List<Integer> rows = new ArrayList<>(chunkSize);
+            int row = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    foodItems.add(columns != null ? parseCsv(line, columns) : objectMapper.readValue(line, FoodItem.class));
+                    rows.add(row);
+                } catch (JsonProcessingException | IllegalArgumentException e) {
+                    LOGGER.warning("Row " + row + " rejected: " + e.getMessage());
+                    rejected.incrementAndGet();
+                }
+                row++;
+                if (foodItems.size() == chunkSize) {
+                    chunks.put(new Chunk(foodItems, rows));
+                    foodItems = new ArrayList<>(chunkSize);
+                    rows = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!foodItems.isEmpty()) {
+                chunks.put(new Chunk(foodItems, rows));
+            }
+        }
+    }
+
+    private static Map<String, Integer> readHeader(String header) {
+        if (header == null) {
+            throw new IllegalArgumentException("The file is empty");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = splitCsv(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(), i);
+        }
+        for (String column : CSV_COLUMNS) {
+            if (!columns.containsKey(column)) {
+                throw new IllegalArgumentException("Missing column: " + column);
+            }
+        }
+        return columns;
+    }
+
+    private static FoodItem parseCsv(String line, Map<String, Integer> columns) {
+        List<String> values = splitCsv(line);
+        Macronutrients macronutrients = new Macronutrients();
+        macronutrients.setCalories(parseFloat(values, columns, "calories"));
+        macronutrients.setProtein(parseFloat(values, columns, "protein"));
+        macronutrients.setFat(parseFloat(values, columns, "fat"));
+        macronutrients.setSugar(parseFloat(values, columns, "sugar"));
+        macronutrients.setSalt(parseFloat(values, columns, "salt"));
+
+        FoodItem foodItem = new FoodItem();
+        foodItem.setName(value(values, columns, "name"));
+        foodItem.setMacronutrients(macronutrients);
+        String allergens = value(values, columns, "allergens");
+        if (allergens != null && !allergens.isBlank()) {
+            Set<Allergen> parsed = new HashSet<>();
+            for (String allergen : allergens.split("\\|")) {
+                parsed.add(Allergen.fromString(allergen.trim().replace('_', ' ')));
+            }
+            foodItem.setAllergens(parsed);
+        }
+        return foodItem;
+    }
+
+    private static Float parseFloat(List<String> values, Map<String, Integer> columns, String column) {
+        String value = value(values, columns, column);
+        // Left to the validation of the import, which reports it with the row
+        return value == null || value.isBlank() ? null : Float.valueOf(value.trim());
+    }
+
+    private static String value(List<String> values, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        return index == null || index >= values.size() ? null : values.get(index);
+    }
+
+    /**
+     * Splits a CSV record on commas, honouring double-quoted fields and doubled quotes inside them.
+     * Quoted fields spanning several lines are not supported.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * Rows read from the file, with the number of the row each one came from.
+     */
+    private record Chunk(List<FoodItem> foodItems, List<Integer> rows) {
+    }
+}
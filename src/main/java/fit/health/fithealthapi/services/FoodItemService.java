@@ -1,42 +1,74 @@
 package fit.health.fithealthapi.services;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import fit.health.fithealthapi.exceptions.IngredientNotFoundException;
 import fit.health.fithealthapi.model.FoodItem;
 import fit.health.fithealthapi.model.Macronutrients;
 import fit.health.fithealthapi.model.Recipe;
 import fit.health.fithealthapi.model.RecipeIngredient;
+import fit.health.fithealthapi.model.User;
+import fit.health.fithealthapi.model.dto.BulkImportError;
+import fit.health.fithealthapi.model.dto.BulkImportResult;
 import fit.health.fithealthapi.model.dto.InferredPreferences;
+import fit.health.fithealthapi.model.dto.NameSuggestion;
 import fit.health.fithealthapi.model.dto.SearchRequest;
 import fit.health.fithealthapi.model.enums.Allergen;
 import fit.health.fithealthapi.model.enums.DietaryPreference;
 import fit.health.fithealthapi.model.enums.HealthConditionSuitability;
+import fit.health.fithealthapi.model.enums.UserItemType;
 import fit.health.fithealthapi.repository.FoodItemRepository;
 import fit.health.fithealthapi.repository.RecipeRepository;
+import fit.health.fithealthapi.utils.EnumMasks;
+import fit.health.fithealthapi.utils.MacronutrientCalculator;
+import fit.health.fithealthapi.utils.TransactionUtils;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 @Service
 public class FoodItemService {
 
+    private static final Logger LOGGER = Logger.getLogger(FoodItemService.class.getName());
+
     private final FoodItemRepository foodItemRepository;
     private final RecipeRepository recipeRepository;
     private final OntologyService ontologyService;
     private final EntityManager entityManager;
     private final SharedService sharedService;
-
-    public FoodItemService(FoodItemRepository foodItemRepository, RecipeRepository recipeRepository, OntologyService ontologyService, EntityManager entityManager, SharedService sharedService) {
+    private final ObjectMapper objectMapper;
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final NameSearchIndex nameSearchIndex;
+    private final NameSuggester nameSuggester;
+    private final NutritionRecomputer nutritionRecomputer;
+    private final int bulkBatchSize;
+
+    public FoodItemService(FoodItemRepository foodItemRepository, RecipeRepository recipeRepository, OntologyService ontologyService, EntityManager entityManager, SharedService sharedService,
+                           ObjectMapper objectMapper, RecipeSearchIndex recipeSearchIndex, NameSearchIndex nameSearchIndex,
+                           NameSuggester nameSuggester, NutritionRecomputer nutritionRecomputer,
+                           @Value("${food-items.bulk.batch-size:500}") int bulkBatchSize) {
         this.foodItemRepository = foodItemRepository;
         this.recipeRepository = recipeRepository;
         this.ontologyService = ontologyService;
         this.entityManager = entityManager;
         this.sharedService = sharedService;
+        this.objectMapper = objectMapper;
+        this.recipeSearchIndex = recipeSearchIndex;
+        this.nameSearchIndex = nameSearchIndex;
+        this.nameSuggester = nameSuggester;
+        this.nutritionRecomputer = nutritionRecomputer;
+        this.bulkBatchSize = bulkBatchSize;
     }
 
     // ===================== Food Item Operations =====================
@@ -44,10 +76,154 @@ public class FoodItemService {
     public FoodItem saveFoodItem(FoodItem foodItem) {
         String ontologyLinkedName = sharedService.convertToOntoCase(foodItem.getName() + new SimpleDateFormat("HHmmss").format(new java.util.Date()));
         foodItem.setOntologyLinkedName(ontologyLinkedName);
-        addDataProperties(foodItem);
+        try (OntologyChangeSet changeSet = ontologyService.beginChangeSet()) {
+            addDataProperties(foodItem);
+            changeSet.commit();
+        }
         inferPreferences(foodItem);
-        updateRecipes(foodItem);
-        return foodItemRepository.save(foodItem);
+        updateRecipes(foodItem, false);
+        FoodItem saved = foodItemRepository.save(foodItem);
+        TransactionUtils.afterCommit(() -> indexName(saved));
+        return saved;
+    }
+
+    /**
+     * Create many FoodItems at once. Every valid row is added to the ontology in one change set and
+     * classified in one pass, then the rows are saved in chunks of {@code food-items.bulk.batch-size},
+     * each chunk in its own transaction. Invalid rows, and the rows of a chunk that failed to save,
+     * are reported instead of failing the whole import.
+     * @param foodItems The FoodItems to create, numbered by their position.
+     * @param owner The user the FoodItems belong to.
+     * @return What was created and what was rejected.
+     */
+    public BulkImportResult saveFoodItems(List<FoodItem> foodItems, User owner) {
+        BulkImportResult result = new BulkImportResult();
+        List<ImportRow> rows = new ArrayList<>();
+        for (int i = 0; i < foodItems.size(); i++) {
+            rows.add(new ImportRow(i, foodItems.get(i)));
+        }
+        result.setReceived(rows.size());
+        importFoodItems(rows, owner, result);
+        return result;
+    }
+
+    /**
+     * Create FoodItems from newline-delimited JSON, one FoodItem per non-blank line.
+     * Lines that cannot be read are reported with the other invalid rows.
+     * @param ndjson The FoodItems to create.
+     * @param owner The user the FoodItems belong to.
+     * @return What was created and what was rejected.
+     */
+    public BulkImportResult saveFoodItems(BufferedReader ndjson, User owner) throws IOException {
+        BulkImportResult result = new BulkImportResult();
+        List<ImportRow> rows = new ArrayList<>();
+        int row = 0;
+        String line;
+        while ((line = ndjson.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                rows.add(new ImportRow(row, objectMapper.readValue(line, FoodItem.class)));
+            } catch (JsonProcessingException e) {
+                result.addError(row, null, "Invalid JSON: " + e.getOriginalMessage());
+            }
+            row++;
+        }
+        result.setReceived(row);
+        importFoodItems(rows, owner, result);
+        return result;
+    }
+
+    private void importFoodItems(List<ImportRow> rows, User owner, BulkImportResult result) {
+        List<ImportRow> valid = new ArrayList<>();
+        for (ImportRow row : rows) {
+            String error = validate(row.foodItem());
+            if (error != null) {
+                result.addError(row.index(), row.foodItem() != null ? row.foodItem().getName() : null, error);
+            } else {
+                valid.add(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        // Unique to this import, as the same names come back at the same rows of other imports and ingested chunks
+        String importId = UUID.randomUUID().toString().replace("-", "");
+        for (ImportRow row : valid) {
+            FoodItem foodItem = row.foodItem();
+            foodItem.setOntologyLinkedName(sharedService.convertToOntoCase(foodItem.getName() + "_" + importId + "_" + row.index()));
+            foodItem.setOwner(owner);
+        }
+        try (OntologyChangeSet changeSet = ontologyService.beginChangeSet()) {
+            valid.forEach(row -> addDataProperties(row.foodItem()));
+            changeSet.commit();
+        }
+        Map<String, InferredPreferences> inferred = ontologyService.inferPreferences(
+                valid.stream().map(row -> row.foodItem().getOntologyLinkedName()).toList());
+        for (ImportRow row : valid) {
+            InferredPreferences inferredPreferences = inferred.get(row.foodItem().getOntologyLinkedName());
+            row.foodItem().setDietaryPreferences(inferredPreferences.getDietaryPreferences());
+            row.foodItem().setHealthConditionSuitabilities(inferredPreferences.getHealthConditionSuitabilities());
+        }
+
+        // New FoodItems are in no recipe yet, so unlike saveFoodItem there are no recipes to update
+        List<String> unsaved = new ArrayList<>();
+        for (int start = 0; start < valid.size(); start += bulkBatchSize) {
+            List<ImportRow> chunk = valid.subList(start, Math.min(start + bulkBatchSize, valid.size()));
+            try {
+                foodItemRepository.saveAll(chunk.stream().map(ImportRow::foodItem).toList());
+                chunk.forEach(row -> {
+                    result.addCreated(row.foodItem().getId());
+                    indexName(row.foodItem());
+                });
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to save food items " + chunk.get(0).index() + " to "
+                        + chunk.get(chunk.size() - 1).index(), e);
+                chunk.forEach(row -> {
+                    result.addError(row.index(), row.foodItem().getName(), "Failed to save: " + e.getMessage());
+                    unsaved.add(row.foodItem().getOntologyLinkedName());
+                });
+            }
+        }
+        // The classes of the chunks that failed to save would otherwise stay in the ontology, and be added again
+        // under another name when the rows are imported again
+        if (!unsaved.isEmpty()) {
+            try (OntologyChangeSet changeSet = ontologyService.beginChangeSet()) {
+                unsaved.forEach(ontologyService::deleteItem);
+                changeSet.commit();
+            }
+        }
+        result.getErrors().sort(Comparator.comparingInt(BulkImportError::getRow));
+    }
+
+    private String validate(FoodItem foodItem) {
+        if (foodItem == null) {
+            return "Row is empty";
+        }
+        if (foodItem.getName() == null || foodItem.getName().isBlank()) {
+            return "Name is required";
+        }
+        Macronutrients macronutrients = foodItem.getMacronutrients();
+        if (macronutrients == null) {
+            return "Macronutrients are required";
+        }
+        Map<String, Float> values = new LinkedHashMap<>();
+        values.put("calories", macronutrients.getCalories());
+        values.put("protein", macronutrients.getProtein());
+        values.put("fat", macronutrients.getFat());
+        values.put("sugar", macronutrients.getSugar());
+        values.put("salt", macronutrients.getSalt());
+        for (Map.Entry<String, Float> value : values.entrySet()) {
+            if (value.getValue() == null || !Float.isFinite(value.getValue()) || value.getValue() < 0) {
+                return "Invalid " + value.getKey() + ": " + value.getValue();
+            }
+        }
+        return null;
+    }
+
+    private record ImportRow(int index, FoodItem foodItem) {
     }
 
     @Transactional(readOnly = true)
@@ -66,31 +242,110 @@ public class FoodItemService {
         FoodItem existingFoodItem = foodItemRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("FoodItem not found"));
 
-        if(!ontologyFieldAreEqual(updatedFoodItem, existingFoodItem)){
-            ontologyService.removeDefinedClass(updatedFoodItem.getOntologyLinkedName());
-            ontologyService.removeDataPropertyRestrictions(updatedFoodItem.getOntologyLinkedName());
-            ontologyService.removeObjectPropertyRestrictions(updatedFoodItem.getOntologyLinkedName());
-            addDataProperties(updatedFoodItem);
+        boolean ontologyFieldsChanged = !ontologyFieldAreEqual(updatedFoodItem, existingFoodItem);
+        if (ontologyFieldsChanged) {
+            Set<Recipe> recipes = addMacronutrientChange(existingFoodItem, updatedFoodItem.getMacronutrients());
+            try (OntologyChangeSet changeSet = ontologyService.beginChangeSet()) {
+                ontologyService.removeDefinedClass(updatedFoodItem.getOntologyLinkedName());
+                ontologyService.removeDataPropertyRestrictions(updatedFoodItem.getOntologyLinkedName());
+                ontologyService.removeObjectPropertyRestrictions(updatedFoodItem.getOntologyLinkedName());
+                addDataProperties(updatedFoodItem);
+                recipes.forEach(this::replaceRecipeTotals);
+                changeSet.commit();
+            }
             inferPreferences(updatedFoodItem);
+            inferRecipePreferences(recipes);
             updateFoodFields(updatedFoodItem, existingFoodItem);
         }
 
         existingFoodItem.setName(updatedFoodItem.getName());
         existingFoodItem.setVerifiedByAdmin(updatedFoodItem.isVerifiedByAdmin());
-        updateRecipes(existingFoodItem);
-        return foodItemRepository.save(existingFoodItem);
+        updateRecipes(existingFoodItem, ontologyFieldsChanged);
+        FoodItem saved = foodItemRepository.save(existingFoodItem);
+        TransactionUtils.afterCommit(() -> {
+            recipeSearchIndex.foodItemRenamed(saved.getId(), saved.getName());
+            indexName(saved);
+        });
+        return saved;
     }
 
-    private void updateRecipes(FoodItem foodItem){
-        Set<RecipeIngredient> ingredients = foodItem.getRecipes();
-        for (RecipeIngredient ingredient : ingredients) {
+    /**
+     * Adds to the macronutrients of each recipe using the food item the change per 100 g times the grams of the
+     * food item it uses, instead of summing all of its ingredients again.
+     *
+     * @param current The macronutrients the food item is updated to.
+     * @return The recipes using the food item.
+     */
+    private Set<Recipe> addMacronutrientChange(FoodItem foodItem, Macronutrients current) {
+        Macronutrients change = MacronutrientCalculator.scale(current, 1);
+        change.subtract(foodItem.getMacronutrients());
+        Set<Recipe> recipes = new LinkedHashSet<>();
+        for (RecipeIngredient ingredient : foodItem.getRecipes()) {
             Recipe recipe = ingredient.getRecipe();
             if (recipe != null) {
-                recipe.checkAndUpdateVerification();
-                recipeRepository.save(recipe);
+                float grams = ingredient.getUnit().convertToGrams(ingredient.getQuantity());
+                recipe.getMacronutrients().add(MacronutrientCalculator.scale(change, grams / 100));
+                recipes.add(recipe);
             }
         }
+        return recipes;
+    }
+
+    /**
+     * Writes the totals of a recipe to its ontology class and defines the class again from its restrictions.
+     * Must be called within a change set.
+     */
+    private void replaceRecipeTotals(Recipe recipe) {
+        String recipeName = recipe.getOntologyLinkedName();
+        Macronutrients macronutrients = recipe.getMacronutrients();
+        ontologyService.removeDefinedClass(recipeName);
+        ontologyService.replaceDataPropertyRestriction(recipeName, "totalCalories", macronutrients.getCalories());
+        ontologyService.replaceDataPropertyRestriction(recipeName, "totalFat", macronutrients.getFat());
+        ontologyService.replaceDataPropertyRestriction(recipeName, "totalProtein", macronutrients.getProtein());
+        ontologyService.replaceDataPropertyRestriction(recipeName, "totalSalt", macronutrients.getSalt());
+        ontologyService.replaceDataPropertyRestriction(recipeName, "totalSugar", macronutrients.getSugar());
+        ontologyService.convertToDefinedClass(recipeName);
+    }
+
+    private void inferRecipePreferences(Set<Recipe> recipes) {
+        if (recipes.isEmpty()) {
+            return;
+        }
+        Map<String, InferredPreferences> inferred = ontologyService.inferPreferences(
+                recipes.stream().map(Recipe::getOntologyLinkedName).toList());
+        for (Recipe recipe : recipes) {
+            InferredPreferences inferredPreferences = inferred.get(recipe.getOntologyLinkedName());
+            recipe.setDietaryPreferences(inferredPreferences.getDietaryPreferences());
+            recipe.setHealthConditionSuitabilities(inferredPreferences.getHealthConditionSuitabilities());
+        }
+    }
 
+    /**
+     * Updates the verification of the recipes using the food item and saves them. If the ontology fields of the
+     * food item changed, the recipes have been given their new macronutrients and preferences by then, and the
+     * meals using the food item or the recipes are recalculated once committed, by {@link NutritionRecomputer}.
+     */
+    private void updateRecipes(FoodItem foodItem, boolean ontologyFieldsChanged){
+        Set<Recipe> recipes = new LinkedHashSet<>();
+        for (RecipeIngredient ingredient : foodItem.getRecipes()) {
+            Recipe recipe = ingredient.getRecipe();
+            if (recipe != null) {
+                recipe.checkAndUpdateVerification();
+                recipes.add(recipe);
+            }
+        }
+        recipeRepository.saveAll(recipes);
+
+        if (ontologyFieldsChanged && foodItem.getId() != null) {
+            Map<Long, Float> calories = new HashMap<>();
+            recipes.forEach(recipe -> calories.put(recipe.getId(), recipe.getMacronutrients().getCalories()));
+            List<Long> components = new ArrayList<>(calories.keySet());
+            components.add(foodItem.getId());
+            TransactionUtils.afterCommit(() -> {
+                recipeSearchIndex.caloriesChanged(calories);
+                nutritionRecomputer.componentsChanged(components);
+            });
+        }
     }
 
     private void updateFoodFields(FoodItem updatedFoodItem, FoodItem existingFoodItem) {
@@ -131,10 +386,21 @@ public class FoodItemService {
         return foodItemRepository.findById(id).orElseThrow(EntityNotFoundException::new);
     }
 
+    /**
+     * Loads many FoodItems in a single query.
+     * @param ids The IDs of the FoodItems.
+     * @return The FoodItems found, by ID; missing IDs are left out.
+     */
+    public Map<Long, FoodItem> findAllById(Collection<Long> ids) {
+        return foodItemRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(FoodItem::getId, foodItem -> foodItem));
+    }
+
     /**
      * Delete a FoodItem from both the ontology and the database.
      * @param id The ID of the FoodItem to delete.
      */
+    @Transactional
     public void deleteFoodItem(Long id) {
         FoodItem foodItem = foodItemRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("FoodItem not found"));
@@ -142,30 +408,60 @@ public class FoodItemService {
         ontologyService.deleteItem(foodItem.getOntologyLinkedName());
 
         foodItemRepository.deleteById(id);
+        TransactionUtils.afterCommit(() -> {
+            recipeSearchIndex.foodItemRemoved(id);
+            nameSearchIndex.remove(NameSearchIndex.Kind.FOOD_ITEM, id);
+            nameSuggester.remove(UserItemType.FOOD_ITEM, id);
+        });
     }
 
     // ===================== Preference and Filtering Methods =====================
 
 
     public List<FoodItem> findFoodItemsByPreferences(List<DietaryPreference> preferences) {
-        return filterFoodItemsByPreferences(foodItemRepository.findAll(), preferences);
+        return findFoodItemsByMasks(EnumMasks.toMask(preferences), 0, 0, null);
     }
 
     public List<FoodItem> findFoodItemsWithoutAllergens(List<Allergen> allergens) {
-        return filterFoodItemsWithoutAllergens(foodItemRepository.findAll(), allergens);
+        return findFoodItemsByMasks(0, EnumMasks.toMask(allergens), 0, null);
     }
 
     public List<FoodItem> findFoodItemsByHealthConditions(List<HealthConditionSuitability> preferences) {
-        return filterFoodItemsByHealthConditions(foodItemRepository.findAll(), preferences);
+        return findFoodItemsByMasks(0, 0, EnumMasks.toMask(preferences), null);
     }
+
+    /**
+     * Finds the food items matching the tags of the request and, if it has one, its name, in which case the closest
+     * names come first.
+     */
     public List<FoodItem> searchFoodItems(SearchRequest searchRequest) {
-        List<FoodItem> allFoodItems = foodItemRepository.findAll();
+        if (searchRequest.getName() == null || searchRequest.getName().isBlank()) {
+            return findFoodItemsByMasks(EnumMasks.toMask(searchRequest.getDietaryPreferences()),
+                    EnumMasks.toMask(searchRequest.getAllergens()),
+                    EnumMasks.toMask(searchRequest.getHealthSuitabilities()), null);
+        }
+        nameSearchIndex.ensureLoaded(NameSearchIndex.Kind.FOOD_ITEM,
+                () -> NameSearchIndex.names(foodItemRepository.findAllIdsAndNames()));
+        List<Long> named = new ArrayList<>(nameSearchIndex.search(NameSearchIndex.Kind.FOOD_ITEM, searchRequest.getName()));
+        if (named.isEmpty()) {
+            return List.of();
+        }
+        List<FoodItem> found = new ArrayList<>(findFoodItemsByMasks(EnumMasks.toMask(searchRequest.getDietaryPreferences()),
+                EnumMasks.toMask(searchRequest.getAllergens()),
+                EnumMasks.toMask(searchRequest.getHealthSuitabilities()), named));
+        Map<Long, Integer> rank = new HashMap<>();
+        named.forEach(id -> rank.put(id, rank.size()));
+        found.sort(Comparator.comparing(foodItem -> rank.get(foodItem.getId())));
+        return found;
+    }
 
-        return allFoodItems.stream()
-                .filter(foodItem -> foodItem.getDietaryPreferences().containsAll(searchRequest.getDietaryPreferences()))
-                .filter(foodItem -> Collections.disjoint(foodItem.getAllergens(), searchRequest.getAllergens()))
-                .filter(foodItem -> foodItem.getHealthConditionSuitabilities().containsAll(searchRequest.getHealthSuitabilities()))
-                .collect(Collectors.toList());
+    /**
+     * Suggests the most liked food items with a word of their name starting with the given text.
+     */
+    public List<NameSuggestion> suggest(String text, Integer limit) {
+        nameSuggester.ensureLoaded(UserItemType.FOOD_ITEM,
+                () -> NameSearchIndex.names(foodItemRepository.findAllIdsAndNames()));
+        return nameSuggester.suggest(UserItemType.FOOD_ITEM, text, limit);
     }
 
     public Optional<FoodItem> findByName(String name) {
@@ -209,6 +505,11 @@ public class FoodItemService {
 
     // ===================== Helper Methods =====================
 
+    private void indexName(FoodItem foodItem) {
+        nameSearchIndex.put(NameSearchIndex.Kind.FOOD_ITEM, foodItem.getId(), foodItem.getName());
+        nameSuggester.put(UserItemType.FOOD_ITEM, foodItem.getId(), foodItem.getName());
+    }
+
     private Predicate buildFoodItemPredicate(CriteriaBuilder cb, Root<FoodItem> foodItem, Map<String, Object> filters) {
         Predicate predicate = cb.conjunction();
 
@@ -243,9 +544,6 @@ public class FoodItemService {
             foodItem.setAllergens(Set.of(Allergen.ALLERGEN_FREE));
         }
 
-        // Final ontology operations
-        ontologyService.saveOntology();
-        ontologyService.getReasoner().flush();
         ontologyService.convertToDefinedClass(foodItem.getOntologyLinkedName());
     }
 
@@ -257,21 +555,36 @@ public class FoodItemService {
 
     // ===================== Filtering Methods =====================
 
-    private List<FoodItem> filterFoodItemsByPreferences(List<FoodItem> foodItems, List<DietaryPreference> preferences) {
-        return foodItems.stream()
-                .filter(foodItem -> foodItem.getDietaryPreferences().containsAll(preferences))
-                .collect(Collectors.toList());
-    }
+    /**
+     * Finds the food items having every dietary preference and health condition suitability of the given masks
+     * and none of the allergens, with the checks done by the database on the mask columns.
+     * @param ids The IDs to look among, null for all food items.
+     */
+    private List<FoodItem> findFoodItemsByMasks(long preferences, long excludedAllergens, long suitabilities,
+                                                Collection<Long> ids) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<FoodItem> query = cb.createQuery(FoodItem.class);
+        Root<FoodItem> foodItem = query.from(FoodItem.class);
+
+        Predicate predicate = cb.conjunction();
+        if (preferences != 0) {
+            predicate = cb.and(predicate, cb.equal(bitAnd(cb, foodItem.get("dietaryPreferences"), preferences), preferences));
+        }
+        if (excludedAllergens != 0) {
+            predicate = cb.and(predicate, cb.equal(bitAnd(cb, foodItem.get("allergens"), excludedAllergens), 0L));
+        }
+        if (suitabilities != 0) {
+            predicate = cb.and(predicate, cb.equal(bitAnd(cb, foodItem.get("healthConditionSuitabilities"), suitabilities), suitabilities));
+        }
+        if (ids != null) {
+            predicate = cb.and(predicate, foodItem.get("id").in(ids));
+        }
+        query.where(predicate);
 
-    private List<FoodItem> filterFoodItemsWithoutAllergens(List<FoodItem> foodItems, List<Allergen> allergens) {
-        return foodItems.stream()
-                .filter(foodItem -> Collections.disjoint(foodItem.getAllergens(), allergens))
-                .collect(Collectors.toList());
+        return entityManager.createQuery(query).getResultList();
     }
 
-    private List<FoodItem> filterFoodItemsByHealthConditions(List<FoodItem> foodItems, List<HealthConditionSuitability> preferences) {
-        return foodItems.stream()
-                .filter(foodItem -> foodItem.getHealthConditionSuitabilities().containsAll(preferences))
-                .collect(Collectors.toList());
+    private static Expression<Long> bitAnd(CriteriaBuilder cb, Path<?> maskColumn, long mask) {
+        return cb.function("bitand", Long.class, maskColumn, cb.literal(mask));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.interfeces.PreferenceReasoner;
+import fit.health.fithealthapi.model.dto.InferredPreferences;
+import fit.health.fithealthapi.model.enums.DietaryPreference;
+import fit.health.fithealthapi.model.enums.HealthConditionSuitability;
+import org.semanticweb.HermiT.Reasoner;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * HermiT, the complete OWL 2 DL reasoner. Items are classified by a fresh HermiT instance over their module,
+ * testing one subsumption per preference and suitability class.
+ */
+@Component
+public class HermitPreferenceReasoner implements PreferenceReasoner {
+
+    private final OWLReasonerFactory reasonerFactory = new Reasoner.ReasonerFactory();
+
+    @Override
+    public String getName() {
+        return "hermit";
+    }
+
+    @Override
+    public OWLReasonerFactory getReasonerFactory() {
+        return reasonerFactory;
+    }
+
+    @Override
+    public InferredPreferences classify(OWLClass item, ClassificationModule module) {
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        OWLDataFactory dataFactory = manager.getOWLDataFactory();
+        OWLReasoner reasoner = null;
+        try {
+            reasoner = reasonerFactory.createReasoner(manager.createOntology(module.getAxioms()));
+            Set<DietaryPreference> dietaryPreferences = EnumSet.noneOf(DietaryPreference.class);
+            for (Map.Entry<OWLClass, DietaryPreference> entry : module.dietaryPreferenceClasses().entrySet()) {
+                if (reasoner.isEntailed(dataFactory.getOWLSubClassOfAxiom(item, entry.getKey()))) {
+                    dietaryPreferences.add(entry.getValue());
+                }
+            }
+            Set<HealthConditionSuitability> healthConditionSuitabilities = EnumSet.noneOf(HealthConditionSuitability.class);
+            for (Map.Entry<OWLClass, HealthConditionSuitability> entry : module.healthConditionSuitabilityClasses().entrySet()) {
+                if (reasoner.isEntailed(dataFactory.getOWLSubClassOfAxiom(item, entry.getKey()))) {
+                    healthConditionSuitabilities.add(entry.getValue());
+                }
+            }
+            return new InferredPreferences(Collections.unmodifiableSet(dietaryPreferences),
+                    Collections.unmodifiableSet(healthConditionSuitabilities));
+        } catch (OWLOntologyCreationException e) {
+            throw new RuntimeException("Failed to create classification module: " + e.getMessage(), e);
+        } finally {
+            if (reasoner != null) {
+                reasoner.dispose();
+            }
+        }
+    }
+}
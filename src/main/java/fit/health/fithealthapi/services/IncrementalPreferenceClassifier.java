@@ -0,0 +1,122 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.enums.DietaryPreference;
+import fit.health.fithealthapi.model.enums.HealthConditionSuitability;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Cuts out the part of the ontology a single food item or recipe has to be classified in.
+ * The module is made of the vocabulary of the ontology (every axiom that does not define a food item or a
+ * recipe) plus the definitions of the item and of the items it refers to, so the cost of classifying it
+ * depends on the size of the item, not on the size of the catalogue.
+ */
+class IncrementalPreferenceClassifier {
+
+    private final OWLOntology ontology;
+    private final Predicate<OWLClass> isItem;
+    private final Function<OWLClass, String> naming;
+    private final Map<String, DietaryPreference> dietaryPreferences;
+    private final Map<String, HealthConditionSuitability> healthConditionSuitabilities;
+
+    private Set<OWLAxiom> vocabulary;
+    private Map<OWLClass, DietaryPreference> dietaryPreferenceClasses;
+    private Map<OWLClass, HealthConditionSuitability> healthConditionSuitabilityClasses;
+
+    /**
+     * @param ontology                     The ontology the items are defined in.
+     * @param isItem                       Tells food item and recipe classes apart from the vocabulary.
+     * @param naming                       Maps a class to its name.
+     * @param dietaryPreferences           Dietary preferences by upper-case class name.
+     * @param healthConditionSuitabilities Health condition suitabilities by upper-case class name.
+     */
+    IncrementalPreferenceClassifier(OWLOntology ontology, Predicate<OWLClass> isItem, Function<OWLClass, String> naming,
+                                    Map<String, DietaryPreference> dietaryPreferences,
+                                    Map<String, HealthConditionSuitability> healthConditionSuitabilities) {
+        this.ontology = ontology;
+        this.isItem = isItem;
+        this.naming = naming;
+        this.dietaryPreferences = dietaryPreferences;
+        this.healthConditionSuitabilities = healthConditionSuitabilities;
+    }
+
+    /**
+     * Collects the axioms the item's classification depends on. Must be called while the ontology cannot change,
+     * concurrent calls are safe.
+     */
+    ClassificationModule extractModule(OWLClass item) {
+        Set<OWLAxiom> moduleVocabulary;
+        Map<OWLClass, DietaryPreference> moduleDietaryPreferenceClasses;
+        Map<OWLClass, HealthConditionSuitability> moduleHealthConditionSuitabilityClasses;
+        synchronized (this) {
+            if (vocabulary == null) {
+                extractVocabulary();
+            }
+            moduleVocabulary = vocabulary;
+            moduleDietaryPreferenceClasses = dietaryPreferenceClasses;
+            moduleHealthConditionSuitabilityClasses = healthConditionSuitabilityClasses;
+        }
+        Set<OWLAxiom> itemAxioms = new HashSet<>();
+        Set<OWLClass> visited = new HashSet<>();
+        Deque<OWLClass> pending = new ArrayDeque<>(List.of(item));
+        while (!pending.isEmpty()) {
+            OWLClass current = pending.pop();
+            if (!visited.add(current)) {
+                continue;
+            }
+            for (OWLClassAxiom axiom : ontology.getAxioms(current)) {
+                itemAxioms.add(axiom);
+                for (OWLClass referenced : axiom.getClassesInSignature()) {
+                    if (!visited.contains(referenced) && isItem.test(referenced)) {
+                        pending.push(referenced);
+                    }
+                }
+            }
+        }
+        return new ClassificationModule(moduleVocabulary, itemAxioms, moduleDietaryPreferenceClasses,
+                moduleHealthConditionSuitabilityClasses);
+    }
+
+    /**
+     * Forgets the vocabulary after a change that is not limited to item definitions.
+     */
+    synchronized void invalidateVocabulary() {
+        vocabulary = null;
+    }
+
+    private void extractVocabulary() {
+        Set<OWLAxiom> axioms = new HashSet<>();
+        for (OWLAxiom axiom : ontology.getLogicalAxioms()) {
+            if (!definesItem(axiom)) {
+                axioms.add(axiom);
+            }
+        }
+        Map<OWLClass, DietaryPreference> preferenceClasses = new HashMap<>();
+        Map<OWLClass, HealthConditionSuitability> suitabilityClasses = new HashMap<>();
+        for (OWLClass owlClass : ontology.getClassesInSignature()) {
+            String name = naming.apply(owlClass).toUpperCase();
+            if (dietaryPreferences.containsKey(name)) {
+                preferenceClasses.put(owlClass, dietaryPreferences.get(name));
+            }
+            if (healthConditionSuitabilities.containsKey(name)) {
+                suitabilityClasses.put(owlClass, healthConditionSuitabilities.get(name));
+            }
+        }
+        vocabulary = Collections.unmodifiableSet(axioms);
+        dietaryPreferenceClasses = Collections.unmodifiableMap(preferenceClasses);
+        healthConditionSuitabilityClasses = Collections.unmodifiableMap(suitabilityClasses);
+    }
+
+    private boolean definesItem(OWLAxiom axiom) {
+        if (axiom instanceof OWLSubClassOfAxiom subClassOfAxiom) {
+            return !subClassOfAxiom.getSubClass().isAnonymous() && isItem.test(subClassOfAxiom.getSubClass().asOWLClass());
+        }
+        if (axiom instanceof OWLEquivalentClassesAxiom equivalentClassesAxiom) {
+            return equivalentClassesAxiom.getNamedClasses().stream().anyMatch(isItem);
+        }
+        return false;
+    }
+}
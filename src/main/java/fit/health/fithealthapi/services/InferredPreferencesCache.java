@@ -0,0 +1,116 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.dto.InferredPreferences;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Inferred preferences per ontology class, so that a class is only sent to the reasoner again after
+ * an axiom it depends on has changed. Hits and misses are published as the
+ * {@code ontology.inference.cache} counter, tagged with {@code result}.
+ */
+@Component
+public class InferredPreferencesCache {
+
+    private final Map<String, InferredPreferences> preferencesByClass = new ConcurrentHashMap<>();
+    // Bumped by every invalidation, so that an inference that raced with a change is not cached
+    private final AtomicLong generation = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    public InferredPreferencesCache(MeterRegistry meterRegistry) {
+        this.hits = Counter.builder("ontology.inference.cache")
+                .description("Inferred preference lookups answered without the reasoner")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("ontology.inference.cache")
+                .description("Inferred preference lookups answered without the reasoner")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached preferences of a class, inferring and caching them on a miss.
+     *
+     * @param className The name of the class in the ontology.
+     * @param inference Infers the preferences of the class.
+     */
+    public InferredPreferences get(String className, Function<String, InferredPreferences> inference) {
+        InferredPreferences cached = preferencesByClass.get(className);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        long startGeneration = generation.get();
+        InferredPreferences inferred = inference.apply(className);
+        synchronized (this) {
+            if (generation.get() == startGeneration) {
+                preferencesByClass.put(className, inferred);
+            }
+        }
+        return inferred;
+    }
+
+    /**
+     * Returns the cached preferences of the classes, inferring those that miss in one call.
+     *
+     * @param classNames The names of the classes in the ontology.
+     * @param inference  Infers the preferences of the classes that were not cached.
+     */
+    public Map<String, InferredPreferences> getAll(Collection<String> classNames,
+                                                   Function<Collection<String>, Map<String, InferredPreferences>> inference) {
+        Map<String, InferredPreferences> result = new LinkedHashMap<>();
+        Set<String> missed = new LinkedHashSet<>();
+        for (String className : classNames) {
+            InferredPreferences cached = preferencesByClass.get(className);
+            if (cached != null) {
+                result.put(className, cached);
+            } else {
+                missed.add(className);
+            }
+        }
+        hits.increment(result.size());
+        if (missed.isEmpty()) {
+            return result;
+        }
+        misses.increment(missed.size());
+        long startGeneration = generation.get();
+        Map<String, InferredPreferences> inferred = inference.apply(missed);
+        synchronized (this) {
+            if (generation.get() == startGeneration) {
+                preferencesByClass.putAll(inferred);
+            }
+        }
+        result.putAll(inferred);
+        return result;
+    }
+
+    public synchronized void invalidate(Collection<String> classNames) {
+        generation.incrementAndGet();
+        classNames.forEach(preferencesByClass::remove);
+    }
+
+    public synchronized void invalidateAll() {
+        generation.incrementAndGet();
+        preferencesByClass.clear();
+    }
+
+    public int size() {
+        return preferencesByClass.size();
+    }
+
+    public double getHitCount() {
+        return hits.count();
+    }
+
+    public double getMissCount() {
+        return misses.count();
+    }
+}
@@ -0,0 +1,63 @@
+package fit.health.fithealthapi.services;
+
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The inferred superclasses of every named class in the ontology, as computed by the reasoner.
+ * Lets superclass lookups be answered without classifying the ontology again. Immutable, so it can be
+ * published to readers that do not take any lock.
+ */
+public final class InferredTaxonomy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, Set<String>> superClassesByClass;
+
+    private InferredTaxonomy(Map<String, Set<String>> superClassesByClass) {
+        this.superClassesByClass = superClassesByClass;
+    }
+
+    /**
+     * Classifies the ontology and collects the inferred superclasses of each of its named classes.
+     *
+     * @param reasoner A reasoner that has been flushed with the ontology's current axioms.
+     * @param classes  The classes of the ontology.
+     * @param naming   Maps a class to the name it is looked up by.
+     */
+    public static InferredTaxonomy compute(OWLReasoner reasoner, Collection<OWLClass> classes, Function<OWLClass, String> naming) {
+        Map<String, Set<String>> superClassesByClass = new HashMap<>();
+        for (OWLClass owlClass : classes) {
+            Set<String> superClasses = reasoner.getSuperClasses(owlClass, false).getFlattened().stream()
+                    .map(naming)
+                    .collect(Collectors.toUnmodifiableSet());
+            superClassesByClass.put(naming.apply(owlClass), superClasses);
+        }
+        return new InferredTaxonomy(Collections.unmodifiableMap(superClassesByClass));
+    }
+
+    /**
+     * @return A copy without the given classes, whose superclasses are no longer known.
+     */
+    public InferredTaxonomy without(Collection<String> classNames) {
+        Map<String, Set<String>> remaining = new HashMap<>(superClassesByClass);
+        classNames.forEach(remaining::remove);
+        return new InferredTaxonomy(Collections.unmodifiableMap(remaining));
+    }
+
+    /**
+     * @return The inferred superclasses, or null when the class was not part of the classified ontology.
+     */
+    public Set<String> getSuperClasses(String className) {
+        return superClassesByClass.get(className);
+    }
+
+    public int size() {
+        return superClassesByClass.size();
+    }
+}
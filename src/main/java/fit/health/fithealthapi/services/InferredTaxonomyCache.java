@@ -0,0 +1,123 @@
+package fit.health.fithealthapi.services;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the last classification result on disk, keyed by a hash of the ontology's axioms.
+ * A restart with the same axioms, whatever file or journal they were loaded from, reuses it instead of
+ * classifying the ontology with the reasoner.
+ */
+@Component
+public class InferredTaxonomyCache {
+
+    private static final Logger LOGGER = Logger.getLogger(InferredTaxonomyCache.class.getName());
+
+    private static final int MAGIC = 0x4F54584E;
+    private static final int VERSION = 1;
+
+    private final boolean enabled;
+
+    private Path file;
+
+    public InferredTaxonomyCache(@Value("${ontology.taxonomy-cache.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    void attach(Path file) {
+        this.file = file;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Hashes the logical axioms independently of their order. Declarations and annotations are left out, they
+     * do not change the taxonomy and the RDF/XML round trip adds declarations. Must be called while the
+     * ontology cannot change.
+     */
+    public static byte[] axiomHash(OWLOntology ontology) {
+        List<String> axioms = ontology.getLogicalAxioms().stream()
+                .map(OWLAxiom::toString)
+                .sorted()
+                .toList();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String axiom : axioms) {
+                digest.update(axiom.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @return The cached taxonomy if it was computed for axioms with the given hash.
+     */
+    public Optional<InferredTaxonomy> load(byte[] axiomHash) {
+        if (!enabled || file == null || !Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return Optional.empty();
+            }
+            byte[] cachedHash = new byte[in.readInt()];
+            in.readFully(cachedHash);
+            if (!Arrays.equals(cachedHash, axiomHash)) {
+                LOGGER.info("Inferred taxonomy cache does not match the ontology axioms");
+                return Optional.empty();
+            }
+            return Optional.of((InferredTaxonomy) new ObjectInputStream(in).readObject());
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOGGER.log(Level.WARNING, "Failed to read inferred taxonomy cache", e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Replaces the cached taxonomy with one computed for axioms with the given hash.
+     */
+    public void store(byte[] axiomHash, InferredTaxonomy taxonomy) {
+        if (!enabled || file == null) {
+            return;
+        }
+        try {
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(axiomHash.length);
+                    out.write(axiomHash);
+                    ObjectOutputStream objects = new ObjectOutputStream(out);
+                    objects.writeObject(taxonomy);
+                    objects.flush();
+                }
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write inferred taxonomy cache", e);
+        }
+    }
+}
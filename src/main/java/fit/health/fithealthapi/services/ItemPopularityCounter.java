@@ -0,0 +1,278 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.ItemPopularity;
+import fit.health.fithealthapi.model.enums.PreferenceType;
+import fit.health.fithealthapi.model.enums.UserItemType;
+import fit.health.fithealthapi.repository.ItemPopularityRepository;
+import fit.health.fithealthapi.repository.UserPreferenceRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Number of likes and dislikes of every item, read from memory.
+ * The counts are loaded from the {@code item_popularity} table on first use and then follow the changes reported
+ * by {@link UserPreferenceService}; each count is a {@link LongAdder}, so concurrent likes of a popular item do
+ * not contend on a single value. The changes are added to the table every {@code popularity.flush-interval-ms},
+ * and every {@code popularity.reconcile-interval-ms} the table and the counts are recomputed from the user
+ * preferences, which corrects any drift, such as a change reported while a reconciliation was counting.
+ * Loading and reconciling build a new map and swap it in, so readers never see a partly filled one.
+ */
+@Component
+public class ItemPopularityCounter {
+
+    private static final Logger LOGGER = Logger.getLogger(ItemPopularityCounter.class.getName());
+
+    private final ItemPopularityRepository popularityRepository;
+    private final UserPreferenceRepository preferenceRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService executor;
+
+    // Held for reading while counting, for writing while the counts are replaced or the pending changes taken
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Map<Key, Counts> counts = new ConcurrentHashMap<>();
+    private Map<Key, Counts> pending = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+
+    public ItemPopularityCounter(ItemPopularityRepository popularityRepository,
+                                 UserPreferenceRepository preferenceRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${popularity.flush-interval-ms:5000}") long flushIntervalMs,
+                                 @Value("${popularity.reconcile-interval-ms:3600000}") long reconcileIntervalMs) {
+        this.popularityRepository = popularityRepository;
+        this.preferenceRepository = preferenceRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "popularity-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> runQuietly(this::flush, "flush"),
+                flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(() -> runQuietly(this::reconcile, "reconcile"),
+                reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private record Key(UserItemType itemType, long itemId) {
+    }
+
+    private static class Counts {
+        private final LongAdder likes = new LongAdder();
+        private final LongAdder dislikes = new LongAdder();
+
+        void add(PreferenceType preferenceType, long delta) {
+            (preferenceType == PreferenceType.LIKE ? likes : dislikes).add(delta);
+        }
+    }
+
+    public long getLikes(UserItemType itemType, Long itemId) {
+        ensureLoaded();
+        Counts itemCounts = counts.get(new Key(itemType, itemId));
+        return itemCounts == null ? 0 : itemCounts.likes.sum();
+    }
+
+    public long getDislikes(UserItemType itemType, Long itemId) {
+        ensureLoaded();
+        Counts itemCounts = counts.get(new Key(itemType, itemId));
+        return itemCounts == null ? 0 : itemCounts.dislikes.sum();
+    }
+
+    /**
+     * Records that a user's preference for an item changed, once it is committed.
+     *
+     * @param previous The preference the user had, null if none.
+     * @param current  The preference the user has now, null if removed.
+     */
+    public void changed(UserItemType itemType, Long itemId, PreferenceType previous, PreferenceType current) {
+        if (previous == current) {
+            return;
+        }
+        ensureLoaded();
+        Key key = new Key(itemType, itemId);
+        lock.readLock().lock();
+        try {
+            if (previous != null) {
+                add(key, previous, -1);
+            }
+            if (current != null) {
+                add(key, current, 1);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the changes recorded since the last flush to the table. Flushes and reconciliations run one at a time,
+     * so that two of them never insert the row of a same item.
+     */
+    public synchronized void flush() {
+        ensureLoaded();
+        Map<Key, Counts> changes;
+        lock.writeLock().lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            changes = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> changes.forEach((key, delta) -> {
+                long likes = delta.likes.sum();
+                long dislikes = delta.dislikes.sum();
+                if ((likes != 0 || dislikes != 0)
+                        && popularityRepository.addCounts(key.itemType(), key.itemId(), likes, dislikes) == 0) {
+                    popularityRepository.save(new ItemPopularity(null, key.itemType(), key.itemId(), likes, dislikes));
+                }
+            }));
+        } catch (RuntimeException e) {
+            // Handed back to the next flush
+            lock.readLock().lock();
+            try {
+                changes.forEach((key, delta) -> {
+                    Counts retry = pending.computeIfAbsent(key, ignored -> new Counts());
+                    retry.likes.add(delta.likes.sum());
+                    retry.dislikes.add(delta.dislikes.sum());
+                });
+            } finally {
+                lock.readLock().unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Recounts the likes and dislikes of every item from the user preferences, and writes them to the table.
+     * The recount and the writes run without the lock, so likes keep being recorded meanwhile; the changes
+     * reported since the recount started are added on top of it, in memory and by the next flush.
+     */
+    public synchronized void reconcile() {
+        long startTime = System.nanoTime();
+        // Changes reported before the recount are part of it
+        Map<Key, Counts> counted;
+        lock.writeLock().lock();
+        try {
+            counted = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Map<Key, long[]> actual = new HashMap<>();
+        try {
+            for (Object[] row : preferenceRepository.countAllByItemAndPreferenceType()) {
+                long[] itemCounts = actual.computeIfAbsent(new Key((UserItemType) row[0], (Long) row[1]), key -> new long[2]);
+                itemCounts[row[2] == PreferenceType.LIKE ? 0 : 1] += (Long) row[3];
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Key, long[]> missing = new HashMap<>(actual);
+                for (ItemPopularity popularity : popularityRepository.findAll()) {
+                    long[] itemCounts = missing.remove(new Key(popularity.getItemType(), popularity.getItemId()));
+                    popularity.setLikes(itemCounts == null ? 0 : itemCounts[0]);
+                    popularity.setDislikes(itemCounts == null ? 0 : itemCounts[1]);
+                }
+                missing.forEach((key, itemCounts) -> popularityRepository.save(
+                        new ItemPopularity(null, key.itemType(), key.itemId(), itemCounts[0], itemCounts[1])));
+            });
+        } catch (RuntimeException e) {
+            // The table was left as it was, so the earlier changes still have to be flushed
+            lock.readLock().lock();
+            try {
+                counted.forEach((key, delta) -> {
+                    Counts retry = pending.computeIfAbsent(key, ignored -> new Counts());
+                    retry.likes.add(delta.likes.sum());
+                    retry.dislikes.add(delta.dislikes.sum());
+                });
+            } finally {
+                lock.readLock().unlock();
+            }
+            throw e;
+        }
+
+        Map<Key, Counts> recounted = new ConcurrentHashMap<>();
+        actual.forEach((key, total) -> {
+            Counts itemCounts = new Counts();
+            itemCounts.likes.add(total[0]);
+            itemCounts.dislikes.add(total[1]);
+            recounted.put(key, itemCounts);
+        });
+        lock.writeLock().lock();
+        try {
+            pending.forEach((key, delta) -> {
+                Counts itemCounts = recounted.computeIfAbsent(key, ignored -> new Counts());
+                itemCounts.likes.add(delta.likes.sum());
+                itemCounts.dislikes.add(delta.dislikes.sum());
+            });
+            counts = recounted;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOGGER.info("Item popularity reconciled in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        runQuietly(this::flush, "flush");
+    }
+
+    private void add(Key key, PreferenceType preferenceType, long delta) {
+        counts.computeIfAbsent(key, ignored -> new Counts()).add(preferenceType, delta);
+        pending.computeIfAbsent(key, ignored -> new Counts()).add(preferenceType, delta);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                load();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load() {
+        Map<Key, Counts> loadedCounts = new ConcurrentHashMap<>();
+        for (ItemPopularity popularity : popularityRepository.findAll()) {
+            Counts itemCounts = new Counts();
+            itemCounts.likes.add(popularity.getLikes());
+            itemCounts.dislikes.add(popularity.getDislikes());
+            loadedCounts.put(new Key(popularity.getItemType(), popularity.getItemId()), itemCounts);
+        }
+        counts = loadedCounts;
+        loaded = true;
+    }
+
+    private static void runQuietly(Runnable task, String name) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Item popularity " + name + " failed", e);
+        }
+    }
+}
@@ -12,11 +12,13 @@ import fit.health.fithealthapi.repository.MealItemRepository;
 import fit.health.fithealthapi.repository.MealRepository;
 import fit.health.fithealthapi.repository.RecipeRepository;
 import fit.health.fithealthapi.utils.MealSearchUtils;
+import fit.health.fithealthapi.utils.TransactionUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -27,6 +29,7 @@ public class MealService {
     private final FoodItemRepository foodItemRepository;
     private final RecipeService recipeService;
     private final FoodItemService foodItemService;
+    private final NameSearchIndex nameSearchIndex;
 
     @Transactional
     public Meal createMeal(Meal meal, User user){
@@ -34,7 +37,9 @@ public class MealService {
         setMealItems(meal);
         try {
             meal.updateMealData();
-            return mealRepository.save(meal);
+            Meal saved = mealRepository.save(meal);
+            indexName(saved);
+            return saved;
         }catch (Exception e){
            System.out.println(e.getMessage());
         }
@@ -87,7 +92,9 @@ public class MealService {
         setMealItems(meal);
         try {
             meal.updateMealData();
-            return mealRepository.save(meal);
+            Meal saved = mealRepository.save(meal);
+            indexName(saved);
+            return saved;
         }catch (Exception e){
             System.out.println(e.getMessage());
         }
@@ -97,6 +104,7 @@ public class MealService {
     @Transactional
     public void deleteMeal(Long id) {
         mealRepository.deleteById(id);
+        TransactionUtils.afterCommit(() -> nameSearchIndex.remove(NameSearchIndex.Kind.MEAL, id));
     }
 
     public Optional<Meal> getMealById(Long id) {
@@ -145,6 +153,7 @@ public class MealService {
         meal.setMealItems(mealItems);
         meal.updateMealData();
         mealRepository.save(meal);
+        indexName(meal);
         return meal;
     }
 
@@ -155,13 +164,41 @@ public class MealService {
         }
         Meal meal = mealItem.getMeal();
         mealItemRepository.deleteById(mealItemId);
+        meal.getMealItems().removeIf(item -> Objects.equals(item.getId(), mealItemId));
         meal.updateMealData();
+        indexName(meal);
         return meal;
     }
 
+    /**
+     * Finds the meals matching the search. A query is looked up in the {@link NameSearchIndex}, by the names of the
+     * meals and of their items, and only the meals it finds are loaded, closest names first.
+     */
     public List<Meal> searchMeals(MealSearchDto dto) {
-        List<Meal> all = mealRepository.findAll();
-        return MealSearchUtils.filterMeals(all, dto);
+        if (dto.getQuery() == null || dto.getQuery().isBlank()) {
+            return MealSearchUtils.filterMeals(mealRepository.findAll(), dto);
+        }
+        nameSearchIndex.ensureLoaded(NameSearchIndex.Kind.MEAL, () -> NameSearchIndex.names(
+                Stream.concat(mealRepository.findAllIdsAndNames().stream(),
+                        mealItemRepository.findAllMealIdsAndNames().stream()).toList()));
+        List<Long> named = new ArrayList<>(nameSearchIndex.search(NameSearchIndex.Kind.MEAL, dto.getQuery()));
+        Map<Long, Integer> rank = new HashMap<>();
+        named.forEach(id -> rank.put(id, rank.size()));
+        List<Meal> meals = new ArrayList<>(mealRepository.findAllById(named));
+        meals.sort(Comparator.comparing(meal -> rank.get(meal.getId())));
+        return MealSearchUtils.filterMeals(meals, dto, meal -> true);
+    }
+
+    /**
+     * Indexes the name of the meal with the names of its items, once committed.
+     */
+    private void indexName(Meal meal) {
+        StringBuilder text = new StringBuilder(meal.getName() == null ? "" : meal.getName());
+        if (meal.getMealItems() != null) {
+            meal.getMealItems().forEach(item -> text.append(' ').append(item.getName() == null ? "" : item.getName()));
+        }
+        Long id = meal.getId();
+        TransactionUtils.afterCommit(() -> nameSearchIndex.put(NameSearchIndex.Kind.MEAL, id, text.toString()));
     }
 
 }
@@ -0,0 +1,250 @@
+package fit.health.fithealthapi.services;
+
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Full-text index of the names of recipes, food items and meals.
+ * Names are folded (lower case, diacritics and punctuation removed) and split into words, and every word is
+ * indexed by its trigrams, padded with a space on each side. A query matches a name when each of its words is
+ * part of the folded name: the trigrams of the query words give the candidates and the folded names confirm them,
+ * so a search looks at the few names sharing all the query's trigrams instead of at every name. When no name
+ * contains the query, the names sharing most of its padded trigrams are returned instead, which finds names
+ * with a typo in the query.
+ * <p>
+ * Each kind of document is loaded on first search and then kept up to date by the services that change them.
+ */
+@Component
+public class NameSearchIndex {
+
+    public enum Kind {
+        RECIPE, FOOD_ITEM, MEAL
+    }
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // Share of the query's trigrams a name needs to be returned when no name contains the query
+    private static final double TYPO_MATCH_RATIO = 0.6;
+
+    private final Map<Kind, Documents> documents = new EnumMap<>(Kind.class);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public NameSearchIndex() {
+        for (Kind kind : Kind.values()) {
+            documents.put(kind, new Documents());
+        }
+    }
+
+    /**
+     * The names of one kind of document, each in a slot, with a bitset of slots per trigram.
+     */
+    private static class Documents {
+        private boolean loaded;
+        private final Map<Long, Integer> slotsById = new HashMap<>();
+        private final Deque<Integer> freeSlots = new ArrayDeque<>();
+        private final List<Long> ids = new ArrayList<>();
+        private final List<String> texts = new ArrayList<>();
+        private final List<Set<String>> trigrams = new ArrayList<>();
+        private final Map<String, BitSet> slotsByTrigram = new HashMap<>();
+        private final BitSet occupied = new BitSet();
+    }
+
+    /**
+     * Loads the names of a kind of document if they are not loaded yet.
+     *
+     * @param names Reads every name by ID, only called if needed.
+     */
+    public void ensureLoaded(Kind kind, Supplier<Map<Long, String>> names) {
+        lock.readLock().lock();
+        try {
+            if (documents.get(kind).loaded) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<Long, String> loaded = names.get();
+        lock.writeLock().lock();
+        try {
+            Documents kindDocuments = documents.get(kind);
+            if (!kindDocuments.loaded) {
+                loaded.forEach((id, name) -> index(kindDocuments, id, name));
+                kindDocuments.loaded = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes the name of a new document or reindexes a renamed one. Ignored until the kind is loaded.
+     */
+    public void put(Kind kind, Long id, String name) {
+        lock.writeLock().lock();
+        try {
+            Documents kindDocuments = documents.get(kind);
+            if (kindDocuments.loaded) {
+                unindex(kindDocuments, id);
+                index(kindDocuments, id, name);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Kind kind, Long id) {
+        lock.writeLock().lock();
+        try {
+            unindex(documents.get(kind), id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the IDs of the documents whose name contains every word of the query, ignoring case, diacritics and
+     * punctuation, or if there are none, of the documents whose name is closest to the query, closest first.
+     * A query without any letter or digit matches every document.
+     */
+    public Set<Long> search(Kind kind, String query) {
+        List<String> words = words(query);
+        lock.readLock().lock();
+        try {
+            Documents kindDocuments = documents.get(kind);
+            Set<Long> found = new LinkedHashSet<>();
+            BitSet candidates = (BitSet) kindDocuments.occupied.clone();
+            for (String word : words) {
+                for (String trigram : trigrams(word, false)) {
+                    BitSet slots = kindDocuments.slotsByTrigram.get(trigram);
+                    if (slots == null) {
+                        candidates.clear();
+                        break;
+                    }
+                    candidates.and(slots);
+                }
+            }
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                String text = kindDocuments.texts.get(slot);
+                if (words.stream().allMatch(text::contains)) {
+                    found.add(kindDocuments.ids.get(slot));
+                }
+            }
+            if (found.isEmpty() && !words.isEmpty()) {
+                found.addAll(closest(kindDocuments, words));
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Collects the names of documents read as rows of an ID and a name, joining the names of the rows of a same ID,
+     * such as the name of a meal and the names of its items.
+     */
+    public static Map<Long, String> names(List<Object[]> rows) {
+        Map<Long, String> names = new HashMap<>();
+        for (Object[] row : rows) {
+            if (row[1] != null) {
+                names.merge((Long) row[0], (String) row[1], (first, second) -> first + " " + second);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Folds a name or a query: lower case, without diacritics, words separated by single spaces.
+     */
+    static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return SEPARATORS.matcher(DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT))
+                .replaceAll(" ").trim();
+    }
+
+    private static List<String> words(String text) {
+        String folded = fold(text);
+        return folded.isEmpty() ? List.of() : List.of(folded.split(" "));
+    }
+
+    /**
+     * The trigrams of a word, padded with a space on each side or not. Words of one or two letters have no
+     * trigram unless padded.
+     */
+    private static Set<String> trigrams(String word, boolean padded) {
+        String text = padded ? " " + word + " " : word;
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(text.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    private static List<Long> closest(Documents kindDocuments, List<String> words) {
+        Set<String> queryTrigrams = new HashSet<>();
+        words.forEach(word -> queryTrigrams.addAll(trigrams(word, true)));
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            BitSet slots = kindDocuments.slotsByTrigram.get(trigram);
+            if (slots != null) {
+                slots.stream().forEach(slot -> shared.merge(slot, 1, Integer::sum));
+            }
+        }
+        int needed = Math.max(2, (int) Math.ceil(queryTrigrams.size() * TYPO_MATCH_RATIO));
+        return shared.entrySet().stream()
+                .filter(entry -> entry.getValue() >= needed)
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                        .thenComparing(entry -> kindDocuments.trigrams.get(entry.getKey()).size()))
+                .map(entry -> kindDocuments.ids.get(entry.getKey()))
+                .toList();
+    }
+
+    private static void index(Documents kindDocuments, Long id, String name) {
+        int slot;
+        if (kindDocuments.freeSlots.isEmpty()) {
+            slot = kindDocuments.ids.size();
+            kindDocuments.ids.add(null);
+            kindDocuments.texts.add(null);
+            kindDocuments.trigrams.add(null);
+        } else {
+            slot = kindDocuments.freeSlots.pop();
+        }
+        String text = fold(name);
+        Set<String> trigrams = new HashSet<>();
+        for (String word : words(text)) {
+            trigrams.addAll(trigrams(word, true));
+        }
+        kindDocuments.slotsById.put(id, slot);
+        kindDocuments.ids.set(slot, id);
+        kindDocuments.texts.set(slot, text);
+        kindDocuments.trigrams.set(slot, trigrams);
+        kindDocuments.occupied.set(slot);
+        trigrams.forEach(trigram -> kindDocuments.slotsByTrigram.computeIfAbsent(trigram, key -> new BitSet()).set(slot));
+    }
+
+    private static void unindex(Documents kindDocuments, Long id) {
+        Integer slot = kindDocuments.slotsById.remove(id);
+        if (slot == null) {
+            return;
+        }
+        for (String trigram : kindDocuments.trigrams.get(slot)) {
+            BitSet slots = kindDocuments.slotsByTrigram.get(trigram);
+            slots.clear(slot);
+            if (slots.isEmpty()) {
+                kindDocuments.slotsByTrigram.remove(trigram);
+            }
+        }
+        kindDocuments.ids.set(slot, null);
+        kindDocuments.texts.set(slot, null);
+        kindDocuments.trigrams.set(slot, null);
+        kindDocuments.occupied.clear(slot);
+        kindDocuments.freeSlots.push(slot);
+    }
+}
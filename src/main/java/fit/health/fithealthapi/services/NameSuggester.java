@@ -0,0 +1,329 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.dto.NameSuggestion;
+import fit.health.fithealthapi.model.enums.UserItemType;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Completes the start of a food item or recipe name as it is typed. The folded names (see
+ * {@link NameSearchIndex#fold}) are kept in a compressed prefix trie, once from the start of each of their words,
+ * and every node of the trie holds the most liked items below it, so a suggestion is a walk down the letters of
+ * the prefix and a read of one short list, whatever the number of names.
+ * <p>
+ * New and renamed items are added to the trie as they are saved; renamed and deleted items are left in it and
+ * skipped when suggested, until the trie is rebuilt every {@code suggest.rebuild-interval-ms}, which also ranks
+ * the items again by their current number of likes from {@link ItemPopularityCounter}.
+ */
+@Component
+public class NameSuggester {
+
+    private static final Logger LOGGER = Logger.getLogger(NameSuggester.class.getName());
+
+    private final ItemPopularityCounter itemPopularityCounter;
+    private final int maxResults;
+    private final ScheduledExecutorService executor;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UserItemType, Names> names = new EnumMap<>(UserItemType.class);
+
+    public NameSuggester(ItemPopularityCounter itemPopularityCounter,
+                         @Value("${suggest.max-results:10}") int maxResults,
+                         @Value("${suggest.rebuild-interval-ms:60000}") long rebuildIntervalMs) {
+        this.itemPopularityCounter = itemPopularityCounter;
+        this.maxResults = maxResults;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "name-suggester");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::rebuildQuietly, rebuildIntervalMs, rebuildIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The names of one type of item, with their trie.
+     */
+    private static class Names {
+        private final Map<Long, String> byId = new HashMap<>();
+        private Node root = new Node("");
+        // Items saved while the trie is rebuilt, added again to the new trie, null when not rebuilding
+        private Set<Long> savedDuringRebuild;
+    }
+
+    /**
+     * A node of the trie, reached from its parent by the letters of its label, with the most liked items whose
+     * name has a word starting with the letters leading to it, most liked first.
+     */
+    private static class Node {
+        private String label;
+        private final Map<Character, Node> children = new HashMap<>();
+        private final List<Ranked> best = new ArrayList<>();
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private record Ranked(long id, long likes) {
+    }
+
+    /**
+     * Loads the names of a type of item if they are not loaded yet.
+     *
+     * @param loader Reads every name by ID, only called if needed.
+     */
+    public void ensureLoaded(UserItemType itemType, Supplier<Map<Long, String>> loader) {
+        lock.readLock().lock();
+        try {
+            if (names.containsKey(itemType)) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<Long, String> loaded = loader.get();
+        Node root = build(itemType, loaded);
+        lock.writeLock().lock();
+        try {
+            if (!names.containsKey(itemType)) {
+                Names itemNames = new Names();
+                itemNames.byId.putAll(loaded);
+                itemNames.root = root;
+                names.put(itemType, itemNames);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the name of a new or renamed item. Ignored until the type of item is loaded.
+     */
+    public void put(UserItemType itemType, Long id, String name) {
+        long likes = itemPopularityCounter.getLikes(itemType, id);
+        lock.writeLock().lock();
+        try {
+            Names itemNames = names.get(itemType);
+            if (itemNames == null) {
+                return;
+            }
+            itemNames.byId.put(id, name);
+            insert(itemNames.root, name, id, likes);
+            if (itemNames.savedDuringRebuild != null) {
+                itemNames.savedDuringRebuild.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UserItemType itemType, Long id) {
+        lock.writeLock().lock();
+        try {
+            Names itemNames = names.get(itemType);
+            if (itemNames != null) {
+                itemNames.byId.remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the most liked items with a word of their name starting with the given text, ignoring case, accents
+     * and punctuation, then by name.
+     *
+     * @param limit The number of items to return, at most {@code suggest.max-results}, which is also the default.
+     */
+    public List<NameSuggestion> suggest(UserItemType itemType, String text, Integer limit) {
+        String prefix = NameSearchIndex.fold(text);
+        int count = limit == null ? maxResults : Math.max(0, Math.min(limit, maxResults));
+        if (prefix.isEmpty() || count == 0) {
+            return List.of();
+        }
+        List<NameSuggestion> suggestions = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Names itemNames = names.get(itemType);
+            Node node = itemNames == null ? null : find(itemNames.root, prefix);
+            if (node == null) {
+                return List.of();
+            }
+            for (Ranked ranked : node.best) {
+                // Skips the items deleted or renamed since they were added
+                String name = itemNames.byId.get(ranked.id());
+                if (name != null && hasWordStartingWith(NameSearchIndex.fold(name), prefix)) {
+                    suggestions.add(new NameSuggestion(ranked.id(), name, itemPopularityCounter.getLikes(itemType, ranked.id())));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        suggestions.sort(Comparator.comparingLong(NameSuggestion::getLikes).reversed()
+                .thenComparing(NameSuggestion::getName, String.CASE_INSENSITIVE_ORDER));
+        return suggestions.subList(0, Math.min(count, suggestions.size()));
+    }
+
+    /**
+     * Rebuilds the trie of every loaded type of item, leaving out the items deleted or renamed since the last
+     * rebuild and ranking the others by their current number of likes.
+     */
+    public void rebuild() {
+        List<UserItemType> itemTypes;
+        lock.readLock().lock();
+        try {
+            itemTypes = new ArrayList<>(names.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (UserItemType itemType : itemTypes) {
+            Map<Long, String> snapshot;
+            lock.writeLock().lock();
+            try {
+                Names itemNames = names.get(itemType);
+                snapshot = new HashMap<>(itemNames.byId);
+                itemNames.savedDuringRebuild = new HashSet<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Node root = build(itemType, snapshot);
+            lock.writeLock().lock();
+            try {
+                Names itemNames = names.get(itemType);
+                for (Long id : itemNames.savedDuringRebuild) {
+                    String name = itemNames.byId.get(id);
+                    if (name != null) {
+                        insert(root, name, id, itemPopularityCounter.getLikes(itemType, id));
+                    }
+                }
+                itemNames.root = root;
+                itemNames.savedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Node build(UserItemType itemType, Map<Long, String> itemNames) {
+        Node root = new Node("");
+        itemNames.forEach((id, name) -> insert(root, name, id, itemPopularityCounter.getLikes(itemType, id)));
+        return root;
+    }
+
+    /**
+     * Adds an item under the folded name from the start of each of its words.
+     */
+    private void insert(Node root, String name, long id, long likes) {
+        String folded = NameSearchIndex.fold(name);
+        Ranked ranked = new Ranked(id, likes);
+        for (int start = 0; start < folded.length(); start = folded.indexOf(' ', start) + 1) {
+            insertKey(root, folded.substring(start), ranked);
+            if (folded.indexOf(' ', start) < 0) {
+                break;
+            }
+        }
+    }
+
+    private void insertKey(Node root, String key, Ranked ranked) {
+        Node node = root;
+        int position = 0;
+        while (position < key.length()) {
+            Node child = node.children.get(key.charAt(position));
+            if (child == null) {
+                child = new Node(key.substring(position));
+                node.children.put(child.label.charAt(0), child);
+                offer(child, ranked);
+                return;
+            }
+            int common = commonPrefix(child.label, key, position);
+            if (common < child.label.length()) {
+                // Splits the label where the key leaves it
+                Node middle = new Node(child.label.substring(0, common));
+                middle.best.addAll(child.best);
+                child.label = child.label.substring(common);
+                middle.children.put(child.label.charAt(0), child);
+                node.children.put(middle.label.charAt(0), middle);
+                child = middle;
+            }
+            offer(child, ranked);
+            position += common;
+            node = child;
+        }
+    }
+
+    /**
+     * Keeps the item among the most liked of the node, once.
+     */
+    private void offer(Node node, Ranked ranked) {
+        node.best.removeIf(kept -> kept.id() == ranked.id());
+        int position = 0;
+        while (position < node.best.size() && node.best.get(position).likes() >= ranked.likes()) {
+            position++;
+        }
+        if (position < maxResults) {
+            node.best.add(position, ranked);
+            if (node.best.size() > maxResults) {
+                node.best.remove(node.best.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the node below which every key starts with the prefix, null if no key does.
+     */
+    private static Node find(Node root, String prefix) {
+        Node node = root;
+        int position = 0;
+        while (position < prefix.length()) {
+            node = node.children.get(prefix.charAt(position));
+            if (node == null) {
+                return null;
+            }
+            int common = commonPrefix(node.label, prefix, position);
+            if (position + common == prefix.length()) {
+                return node;
+            }
+            if (common < node.label.length()) {
+                return null;
+            }
+            position += common;
+        }
+        return node;
+    }
+
+    private static int commonPrefix(String label, String key, int from) {
+        int length = 0;
+        while (length < label.length() && from + length < key.length()
+                && label.charAt(length) == key.charAt(from + length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private static boolean hasWordStartingWith(String folded, String prefix) {
+        return folded.startsWith(prefix) || folded.contains(" " + prefix);
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Name suggestion rebuild failed", e);
+        }
+    }
+}
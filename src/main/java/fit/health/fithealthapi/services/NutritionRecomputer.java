@@ -0,0 +1,126 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.Meal;
+import fit.health.fithealthapi.model.MealItem;
+import fit.health.fithealthapi.repository.MealItemRepository;
+import fit.health.fithealthapi.repository.MealRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Brings the nutrition of meals up to date after the macronutrients of a food item or recipe change.
+ * The changed components are collected as they are committed, and every {@code nutrition.recompute.interval-ms}
+ * the meal items using them are calculated again from their component, then the meals holding those items are
+ * summed again from their items, {@code nutrition.recompute.batch-size} rows per transaction. Only the items and
+ * meals depending on a changed component are read.
+ * <p>
+ * Items and meals are recalculated from what they depend on rather than by a difference, so an item also changed
+ * by its owner in the meantime stays right. Meal plans and diary entries need nothing: their totals are summed from
+ * their meals whenever they are read.
+ */
+@Component
+public class NutritionRecomputer {
+
+    private static final Logger LOGGER = Logger.getLogger(NutritionRecomputer.class.getName());
+
+    private final MealItemRepository mealItemRepository;
+    private final MealRepository mealRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final ScheduledExecutorService executor;
+
+    private final Set<Long> changedComponents = ConcurrentHashMap.newKeySet();
+
+    public NutritionRecomputer(MealItemRepository mealItemRepository,
+                               MealRepository mealRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${nutrition.recompute.batch-size:200}") int batchSize,
+                               @Value("${nutrition.recompute.interval-ms:2000}") long intervalMs) {
+        this.mealItemRepository = mealItemRepository;
+        this.mealRepository = mealRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nutrition-recomputer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::recomputeQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records that the macronutrients of food items or recipes changed. Called once the change is committed.
+     *
+     * @param componentIds The IDs of the food items and recipes.
+     */
+    public void componentsChanged(Collection<Long> componentIds) {
+        changedComponents.addAll(componentIds);
+    }
+
+    /**
+     * Recalculates the meal items and meals depending on the components changed since the last run. Runs one at a
+     * time; if a batch fails, its components are kept for the next run.
+     */
+    public synchronized void recompute() {
+        if (changedComponents.isEmpty()) {
+            return;
+        }
+        List<Long> components = new ArrayList<>(changedComponents);
+        changedComponents.removeAll(components);
+        try {
+            Set<Long> meals = new HashSet<>();
+            List<Long> items = new ArrayList<>();
+            for (List<Long> batch : batches(components)) {
+                items.addAll(mealItemRepository.findIdsByComponentIdIn(batch));
+            }
+            for (List<Long> batch : batches(items)) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (MealItem item : mealItemRepository.findAllById(batch)) {
+                        item.calculateMacronutrients();
+                        meals.add(item.getMeal().getId());
+                    }
+                });
+            }
+            for (List<Long> batch : batches(new ArrayList<>(meals))) {
+                transactionTemplate.executeWithoutResult(status ->
+                        mealRepository.findAllWithItemsByIdIn(batch).forEach(Meal::recalculateMacronutrients));
+            }
+            LOGGER.fine(() -> "Recomputed " + items.size() + " meal items and " + meals.size() + " meals");
+        } catch (RuntimeException e) {
+            changedComponents.addAll(components);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private List<List<Long>> batches(List<Long> ids) {
+        List<List<Long>> batches = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += batchSize) {
+            batches.add(ids.subList(start, Math.min(start + batchSize, ids.size())));
+        }
+        return batches;
+    }
+
+    private void recomputeQuietly() {
+        try {
+            recompute();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Nutrition recomputation failed", e);
+        }
+    }
+}
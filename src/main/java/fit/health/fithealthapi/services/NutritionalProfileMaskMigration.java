@@ -0,0 +1,138 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.enums.Allergen;
+import fit.health.fithealthapi.model.enums.DietaryPreference;
+import fit.health.fithealthapi.model.enums.HealthConditionSuitability;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Moves the dietary preferences, allergens and health condition suitabilities of the nutritional profiles from
+ * the collection tables they used to be stored in to the mask columns that replaced them. It runs before the
+ * entity manager factory is built, so nothing reads or writes a profile before its masks are filled: a missing
+ * mask column is added, filled from the old collection table, then made {@code not null default 0}. Columns that
+ * are already not null are left alone, so it does nothing once the data has moved. The old tables are left in
+ * place and can be dropped by hand.
+ */
+@Component
+public class NutritionalProfileMaskMigration implements InitializingBean {
+
+    private static final Logger LOGGER = Logger.getLogger(NutritionalProfileMaskMigration.class.getName());
+    private static final int BATCH_SIZE = 500;
+
+    // Owning table and prefix of its collection tables, for each entity extending NutritionalProfile
+    private static final Map<String, String> OWNERS = Map.of(
+            "meal_component", "meal_component",
+            "meals", "meal",
+            "meal_items", "meal_item",
+            "meal_plans", "meal_plan",
+            "diary_entries", "diary_entry");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NutritionalProfileMaskMigration(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Map<String, Map<String, Boolean>> tables = existingTables();
+        for (Map.Entry<String, String> owner : OWNERS.entrySet()) {
+            // A new database gets its tables and not null mask columns from the schema update
+            if (!tables.containsKey(owner.getKey())) {
+                continue;
+            }
+            migrate(tables, owner.getKey(), owner.getValue(), "dietary_preferences", DietaryPreference.class);
+            migrate(tables, owner.getKey(), owner.getValue(), "allergens", Allergen.class);
+            migrate(tables, owner.getKey(), owner.getValue(), "health_condition_suitabilities", HealthConditionSuitability.class);
+        }
+    }
+
+    private <E extends Enum<E>> void migrate(Map<String, Map<String, Boolean>> tables, String owner, String prefix,
+                                             String attribute, Class<E> type) {
+        String maskColumn = attribute + "_mask";
+        Boolean nullable = tables.get(owner).get(maskColumn);
+        if (Boolean.FALSE.equals(nullable)) {
+            return;
+        }
+        if (nullable == null) {
+            jdbcTemplate.execute("alter table " + owner + " add column " + maskColumn + " bigint");
+        }
+        String collectionTable = prefix + "_" + attribute;
+        if (tables.containsKey(collectionTable)) {
+            Map<Long, Long> masks = new HashMap<>();
+            Set<String> unknown = new TreeSet<>();
+            jdbcTemplate.query("select c." + prefix + "_id, c." + attribute + " from " + collectionTable + " c join "
+                    + owner + " o on o.id = c." + prefix + "_id where o." + maskColumn + " is null", row -> {
+                String value = row.getString(2);
+                try {
+                    masks.merge(row.getLong(1), 1L << Enum.valueOf(type, value).ordinal(), (a, b) -> a | b);
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    unknown.add(String.valueOf(value));
+                }
+            });
+            if (!unknown.isEmpty()) {
+                LOGGER.warning("Skipped unknown values of " + collectionTable + ": " + unknown);
+            }
+            List<Object[]> updates = masks.entrySet().stream()
+                    .map(mask -> new Object[]{mask.getValue(), mask.getKey()})
+                    .toList();
+            for (int start = 0; start < updates.size(); start += BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("update " + owner + " set " + maskColumn + " = ? where id = ? and "
+                        + maskColumn + " is null", updates.subList(start, Math.min(start + BATCH_SIZE, updates.size())));
+            }
+            if (!updates.isEmpty()) {
+                LOGGER.info("Moved " + updates.size() + " rows of " + collectionTable + " to " + owner + "." + maskColumn);
+            }
+        }
+        // Rows without any value in the collection table have an empty set
+        jdbcTemplate.update("update " + owner + " set " + maskColumn + " = 0 where " + maskColumn + " is null");
+        jdbcTemplate.execute("alter table " + owner + " alter column " + maskColumn + " set default 0");
+        jdbcTemplate.execute("alter table " + owner + " alter column " + maskColumn + " set not null");
+    }
+
+    /**
+     * The tables of the database, each with its columns and whether they are nullable, all in lower case.
+     */
+    private Map<String, Map<String, Boolean>> existingTables() {
+        return jdbcTemplate.execute((Connection connection) -> {
+            Map<String, Map<String, Boolean>> tables = new HashMap<>();
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (ResultSet resultSet = metaData.getTables(connection.getCatalog(), null, "%", new String[]{"TABLE"})) {
+                while (resultSet.next()) {
+                    tables.put(resultSet.getString("TABLE_NAME").toLowerCase(), new HashMap<>());
+                }
+            }
+            try (ResultSet resultSet = metaData.getColumns(connection.getCatalog(), null, "%", "%")) {
+                while (resultSet.next()) {
+                    Map<String, Boolean> columns = tables.get(resultSet.getString("TABLE_NAME").toLowerCase());
+                    if (columns != null) {
+                        columns.put(resultSet.getString("COLUMN_NAME").toLowerCase(),
+                                resultSet.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls);
+                    }
+                }
+            }
+            return tables;
+        });
+    }
+
+    /**
+     * Makes the entity manager factory, and so every repository and controller, wait for the migration.
+     */
+    @Component
+    static class EntityManagerFactoryDependsOnMigration extends EntityManagerFactoryDependsOnPostProcessor {
+
+        EntityManagerFactoryDependsOnMigration() {
+            super(NutritionalProfileMaskMigration.class);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package fit.health.fithealthapi.services;
+
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.RemoveAxiom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit of work for ontology mutations.
+ * Changes are applied to the in-memory ontology as soon as they are recorded, so later steps of the
+ * same operation can read them, but the reasoner flush and the write to disk happen once on {@link #commit()}.
+ * A change set opened while another one is active on the same thread joins the outer one.
+ * The outermost change set holds the ontology write lock from the moment it is opened until it is closed,
+ * so it must always be closed, and should only contain ontology work.
+ *
+ * Example:
+ * <pre>
+ * try (OntologyChangeSet changeSet = ontologyService.beginChangeSet()) {
+ *     ontologyService.createItemType("Broccoli", "FoodItem");
+ *     ontologyService.convertToDefinedClass("Broccoli");
+ *     changeSet.commit();
+ * }
+ * </pre>
+ */
+public class OntologyChangeSet implements AutoCloseable {
+
+    private final OntologyService ontologyService;
+    private final OntologyChangeSet outer;
+    private final List<OWLOntologyChange> changes;
+    private boolean completed = false;
+
+    OntologyChangeSet(OntologyService ontologyService, OntologyChangeSet outer) {
+        this.ontologyService = ontologyService;
+        this.outer = outer;
+        this.changes = outer != null ? outer.changes : new ArrayList<>();
+    }
+
+    void record(List<OWLOntologyChange> appliedChanges) {
+        if (completed) {
+            throw new IllegalStateException("Ontology change set is already completed");
+        }
+        changes.addAll(appliedChanges);
+    }
+
+    public List<OWLOntologyChange> getChanges() {
+        return Collections.unmodifiableList(changes);
+    }
+
+    public boolean isNested() {
+        return outer != null;
+    }
+
+    /**
+     * Flushes the reasoner and persists the ontology once for every change recorded so far.
+     * On a nested change set this is a no-op, the outermost one commits.
+     * If the changes cannot be journaled, the change set stays uncommitted and closing it reverts them.
+     */
+    public void commit() {
+        if (completed) {
+            return;
+        }
+        if (outer == null) {
+            ontologyService.commitChangeSet(this);
+        }
+        completed = true;
+    }
+
+    /**
+     * Reverts the recorded changes when the outermost change set is closed without being committed.
+     */
+    @Override
+    public void close() {
+        if (outer != null) {
+            completed = true;
+            return;
+        }
+        try {
+            if (!completed) {
+                completed = true;
+                ontologyService.rollbackChangeSet(this);
+            }
+        } finally {
+            ontologyService.endChangeSet(this);
+        }
+    }
+
+    List<OWLOntologyChange> inverseChanges() {
+        List<OWLOntologyChange> inverse = new ArrayList<>();
+        for (int i = changes.size() - 1; i >= 0; i--) {
+            OWLOntologyChange change = changes.get(i);
+            if (change.isAddAxiom()) {
+                inverse.add(new RemoveAxiom(change.getOntology(), change.getAxiom()));
+            } else if (change.isRemoveAxiom()) {
+                inverse.add(new AddAxiom(change.getOntology(), change.getAxiom()));
+            }
+        }
+        return inverse;
+    }
+}
@@ -0,0 +1,244 @@
+package fit.health.fithealthapi.services;
+
+import org.coode.owlapi.functionalrenderer.OWLObjectRenderer;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.io.StringDocumentSource;
+import org.semanticweb.owlapi.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only log of committed ontology change sets.
+ * Every commit appends one batch of axiom additions and removals in functional syntax, so a write costs
+ * the size of the change rather than the size of the ontology. On startup the batches are replayed on top
+ * of the last snapshot. A batch cut short has no COMMIT line and is skipped; it is cut off the journal when a
+ * failed append leaves it, or when replay finds it at the end after a crash, so the next batch starts clean.
+ *
+ * Example batch:
+ * <pre>
+ * BEGIN 1717171717171
+ * + SubClassOf(&lt;...#Broccoli123456&gt; &lt;...#FoodItem&gt;)
+ * - SubClassOf(&lt;...#Broccoli123456&gt; DataHasValue(&lt;...#fatContent&gt; "0.4"^^xsd:float))
+ * COMMIT
+ * </pre>
+ */
+@Component
+public class OntologyJournal {
+
+    private static final Logger LOGGER = Logger.getLogger(OntologyJournal.class.getName());
+
+    private static final String BEGIN = "BEGIN ";
+    private static final String COMMIT = "COMMIT";
+    private static final String ADD = "+ ";
+    private static final String REMOVE = "- ";
+
+    private final long compactionThresholdBytes;
+    private final OWLOntology renderContext;
+
+    private Path file;
+
+    public OntologyJournal(@Value("${ontology.journal.compaction-threshold-bytes:262144}") long compactionThresholdBytes) {
+        this.compactionThresholdBytes = compactionThresholdBytes;
+        try {
+            // An empty ontology without prefixes makes the renderer write full IRIs
+            this.renderContext = OWLManager.createOWLOntologyManager().createOntology();
+        } catch (OWLOntologyCreationException e) {
+            throw new RuntimeException("Failed to create journal render context", e);
+        }
+    }
+
+    void attach(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Appends the net effect of a committed change set and forces it to disk. If the write fails, whatever part
+     * of the batch was written is truncated away.
+     *
+     * @param changes The changes in the order they were applied.
+     */
+    public synchronized void append(List<OWLOntologyChange> changes) {
+        Map<OWLAxiom, Boolean> netChanges = new LinkedHashMap<>();
+        for (OWLOntologyChange change : changes) {
+            if (change.isAxiomChange()) {
+                netChanges.remove(change.getAxiom());
+                netChanges.put(change.getAxiom(), change.isAddAxiom());
+            }
+        }
+        if (netChanges.isEmpty()) {
+            return;
+        }
+
+        StringBuilder batch = new StringBuilder(BEGIN).append(System.currentTimeMillis()).append('\n');
+        netChanges.forEach((axiom, added) ->
+                batch.append(added ? ADD : REMOVE).append(escape(render(axiom))).append('\n'));
+        batch.append(COMMIT).append('\n');
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long start = channel.size();
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                try {
+                    channel.truncate(start);
+                } catch (IOException truncateFailure) {
+                    e.addSuppressed(truncateFailure);
+                }
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append to ontology journal: " + e.getMessage(), e);
+        }
+    }
+
+    public synchronized long size() {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public boolean needsCompaction() {
+        return size() >= compactionThresholdBytes;
+    }
+
+    /**
+     * Applies every committed batch of the journal to the ontology, in order.
+     *
+     * @return The number of batches replayed.
+     */
+    public synchronized int replay(OWLOntologyManager manager, OWLOntology ontology) {
+        if (file == null || !Files.exists(file)) {
+            return 0;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read ontology journal: " + e.getMessage(), e);
+        }
+
+        int replayed = 0;
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        boolean inBatch = false;
+        // Byte offsets of the current line and of the BEGIN line of the current batch
+        long offset = 0;
+        long batchStart = 0;
+        for (String line : lines) {
+            long lineStart = offset;
+            offset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            if (line.startsWith(BEGIN)) {
+                if (inBatch) {
+                    LOGGER.warning("Skipping incomplete ontology journal batch");
+                }
+                added.clear();
+                removed.clear();
+                inBatch = true;
+                batchStart = lineStart;
+            } else if (line.equals(COMMIT) && inBatch) {
+                List<OWLOntologyChange> changes = new ArrayList<>();
+                parse(removed).forEach(axiom -> changes.add(new RemoveAxiom(ontology, axiom)));
+                parse(added).forEach(axiom -> changes.add(new AddAxiom(ontology, axiom)));
+                manager.applyChanges(changes);
+                replayed++;
+                inBatch = false;
+            } else if (line.startsWith(ADD) && inBatch) {
+                added.add(unescape(line.substring(ADD.length())));
+            } else if (line.startsWith(REMOVE) && inBatch) {
+                removed.add(unescape(line.substring(REMOVE.length())));
+            }
+        }
+        if (inBatch) {
+            LOGGER.warning("Skipping incomplete ontology journal batch at the end of " + file);
+            truncate(batchStart);
+        }
+        return replayed;
+    }
+
+    /**
+     * Drops the batches written before the given offset, once a snapshot containing them is on disk.
+     *
+     * @param offset The journal size observed when the snapshot was rendered.
+     */
+    public synchronized void discardUpTo(long offset) {
+        try {
+            if (!Files.exists(file) || offset <= 0) {
+                return;
+            }
+            byte[] content = Files.readAllBytes(file);
+            byte[] remaining = Arrays.copyOfRange(content, (int) Math.min(offset, content.length), content.length);
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            Files.write(temp, remaining);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.info("Ontology journal compacted, " + remaining.length + " bytes kept");
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to compact ontology journal", e);
+        }
+    }
+
+    private void truncate(long size) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+            channel.force(false);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to truncate ontology journal", e);
+        }
+    }
+
+    private String render(OWLAxiom axiom) {
+        StringWriter writer = new StringWriter();
+        axiom.accept(new OWLObjectRenderer(renderContext, writer));
+        return writer.toString();
+    }
+
+    private Set<OWLAxiom> parse(List<String> axioms) {
+        if (axioms.isEmpty()) {
+            return Collections.emptySet();
+        }
+        String document = "Ontology(\n" + String.join("\n", axioms) + "\n)";
+        try {
+            return OWLManager.createOWLOntologyManager()
+                    .loadOntologyFromOntologyDocument(new StringDocumentSource(document))
+                    .getAxioms();
+        } catch (OWLOntologyCreationException e) {
+            throw new RuntimeException("Corrupt ontology journal batch: " + e.getMessage(), e);
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                result.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
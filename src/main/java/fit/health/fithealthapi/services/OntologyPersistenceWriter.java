@@ -0,0 +1,139 @@
+package fit.health.fithealthapi.services;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the ontology document in the background.
+ * Committed changes are made durable by the {@link OntologyJournal}; a full document is only written to compact
+ * the journal, on explicit saves and on shutdown. Every mark received within the debounce interval is coalesced
+ * into a single write, which goes to a temporary file that is then atomically renamed over the target.
+ */
+@Component
+public class OntologyPersistenceWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(OntologyPersistenceWriter.class.getName());
+
+    private final long debounceMs;
+    private final ScheduledExecutorService executor;
+
+    private Path target;
+    private Supplier<Document> documentRenderer;
+    private ScheduledFuture<?> pendingWrite;
+    private boolean dirty = false;
+
+    public OntologyPersistenceWriter(@Value("${ontology.persistence.debounce-ms:2000}") long debounceMs) {
+        this.debounceMs = debounceMs;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ontology-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A rendered ontology document and the callback to run once it is safely on disk.
+     */
+    public record Document(byte[] content, Runnable onWritten) {
+    }
+
+    /**
+     * Binds the writer to the document it persists.
+     *
+     * @param target           The file the ontology is written to.
+     * @param documentRenderer Renders a consistent copy of the ontology document.
+     */
+    void attach(Path target, Supplier<Document> documentRenderer) {
+        this.target = target;
+        this.documentRenderer = documentRenderer;
+    }
+
+    /**
+     * Marks the ontology as changed and schedules a write if none is pending. Once the writer is shut down, the
+     * ontology is only marked as changed.
+     */
+    public synchronized void markDirty() {
+        dirty = true;
+        if (executor.isShutdown()) {
+            return;
+        }
+        if (pendingWrite == null || pendingWrite.isDone()) {
+            pendingWrite = executor.schedule(this::writeIfDirty, debounceMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes any pending changes on the calling thread. Used on shutdown and for explicit saves.
+     */
+    public void flushNow() {
+        synchronized (this) {
+            if (pendingWrite != null) {
+                pendingWrite.cancel(false);
+                pendingWrite = null;
+            }
+        }
+        writeIfDirty();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushNow();
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    private void writeIfDirty() {
+        synchronized (this) {
+            // Changes marked while this write runs must schedule a new one
+            pendingWrite = null;
+            if (!dirty || documentRenderer == null) {
+                return;
+            }
+            dirty = false;
+        }
+        try {
+            long startTime = System.nanoTime();
+            Document document = documentRenderer.get();
+            write(document.content());
+            document.onWritten().run();
+            LOGGER.info("Ontology written to " + target + " in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+        } catch (Exception e) {
+            // After shutdown nothing retries the write, the changes stay in the journal
+            LOGGER.log(Level.SEVERE, executor.isShutdown() ? "Failed to write ontology on shutdown"
+                    : "Failed to write ontology, will retry", e);
+            markDirty();
+        }
+    }
+
+    private void write(byte[] document) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, document);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -1,25 +1,38 @@
-
 package fit.health.fithealthapi.services;
 
+import fit.health.fithealthapi.interfeces.PreferenceReasoner;
 import fit.health.fithealthapi.model.dto.InferredPreferences;
 import fit.health.fithealthapi.model.enums.Allergen;
 import fit.health.fithealthapi.model.enums.DietaryPreference;
 import fit.health.fithealthapi.model.enums.HealthCondition;
 import fit.health.fithealthapi.model.enums.HealthConditionSuitability;
+import jakarta.annotation.PreDestroy;
 import lombok.Getter;
-import org.semanticweb.HermiT.Reasoner;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.*;
 import org.semanticweb.owlapi.reasoner.*;
 import org.semanticweb.owlapi.util.OWLEntityRemover;
 import org.semanticweb.owlapi.util.OWLEntityRenamer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class OntologyService {
@@ -27,6 +40,11 @@ public class OntologyService {
     @Getter
     private static final Logger LOGGER = Logger.getLogger(OntologyService.class.getName());
 
+    private static final Map<String, DietaryPreference> DIETARY_PREFERENCES = byName(DietaryPreference.values());
+    private static final Map<String, HealthConditionSuitability> HEALTH_CONDITION_SUITABILITIES = byName(HealthConditionSuitability.values());
+    private static final Map<String, Allergen> ALLERGENS = byName(Allergen.values());
+    private static final Map<String, HealthCondition> HEALTH_CONDITIONS = byName(HealthCondition.values());
+
     @Getter
     private final OWLOntologyManager ontologyManager;
     @Getter
@@ -35,39 +53,148 @@ public class OntologyService {
     private OWLOntology ontology;
     @Getter
     private String ontologyIRI;
-    @Getter
+    // Guarded by reasonerLock, flushed under the read lock so the ontology cannot change while it is loaded
     private OWLReasoner reasoner;
-
-    public OntologyService() {
+    private long reasonerVersion;
+    private volatile boolean reasonerStale = false;
+    // Immutable, replaced as a whole after every committed change set and read without any lock
+    private volatile InferredTaxonomy taxonomy;
+    // Whether the taxonomy covers every class of the current ontology, or had changed items pruned from it
+    private volatile boolean taxonomyComplete;
+    // Incremented by every committed change set, under the write lock
+    private long ontologyVersion;
+
+    private final ThreadLocal<OntologyChangeSet> activeChangeSet = new ThreadLocal<>();
+    // Readers of the ontology (module extraction, reasoner flushes, rendering) share it, a change set holds it
+    // exclusively until it ends
+    private final ReentrantReadWriteLock ontologyLock = new ReentrantReadWriteLock();
+    private final Object reasonerLock = new Object();
+    private final ScheduledExecutorService taxonomyRebuilder;
+    private final long taxonomyRebuildDelayMs;
+    private ScheduledFuture<?> pendingRebuild;
+
+    private final File ontologyFile;
+    private final OntologyPersistenceWriter persistenceWriter;
+    private final OntologyJournal journal;
+    private final OntologySnapshotStore snapshotStore;
+    private final InferredTaxonomyCache taxonomyCache;
+    private final InferredPreferencesCache preferencesCache;
+    private final boolean incrementalReasoning;
+    private final boolean verifyIncrementalReasoning;
+    private final PreferenceReasoner preferenceReasoner;
+    private IncrementalPreferenceClassifier preferenceClassifier;
+
+    public OntologyService(OntologyPersistenceWriter persistenceWriter,
+                           OntologyJournal journal,
+                           OntologySnapshotStore snapshotStore,
+                           InferredTaxonomyCache taxonomyCache,
+                           InferredPreferencesCache preferencesCache,
+                           List<PreferenceReasoner> preferenceReasoners,
+                           @Value("${ontology.reasoner:hermit}") String reasonerName,
+                           @Value("${ontology.file:src/main/java/fit/health/fithealthapi/ontology/health.owl}") String ontologyFile,
+                           @Value("${ontology.reasoning.mode:incremental}") String reasoningMode,
+                           @Value("${ontology.reasoning.verify:false}") boolean verifyIncrementalReasoning,
+                           @Value("${ontology.taxonomy.rebuild-delay-ms:5000}") long taxonomyRebuildDelayMs) {
+        this.persistenceWriter = persistenceWriter;
+        this.journal = journal;
+        this.snapshotStore = snapshotStore;
+        this.taxonomyCache = taxonomyCache;
+        this.preferencesCache = preferencesCache;
+        this.preferenceReasoner = preferenceReasoners.stream()
+                .filter(candidate -> candidate.getName().equalsIgnoreCase(reasonerName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown ontology reasoner: " + reasonerName));
+        this.incrementalReasoning = "incremental".equalsIgnoreCase(reasoningMode);
+        this.verifyIncrementalReasoning = verifyIncrementalReasoning;
+        this.taxonomyRebuildDelayMs = taxonomyRebuildDelayMs;
+        this.taxonomyRebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ontology-taxonomy");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ontologyFile = new File(ontologyFile);
         ontologyManager = OWLManager.createOWLOntologyManager();
         dataFactory = ontologyManager.getOWLDataFactory();
+        journal.attach(new File(ontologyFile + ".journal").toPath());
+        snapshotStore.attach(new File(ontologyFile + ".snapshot").toPath());
+        taxonomyCache.attach(new File(ontologyFile + ".taxonomy").toPath());
+        persistenceWriter.attach(this.ontologyFile.toPath(), this::renderOntology);
         try {
-            loadOntologyFromFile();
+            if (!loadOntologyFromSnapshot()) {
+                loadOntologyFromFile();
+            }
+            replayJournal();
             ontologyIRI = ontology.getOntologyID().getOntologyIRI().toString() + "#";
-            initializeReasoner();
+            preferenceClassifier = new IncrementalPreferenceClassifier(ontology, this::isItemClass,
+                    owlClass -> getFragment(owlClass.getIRI().toString()), DIETARY_PREFERENCES, HEALTH_CONDITION_SUITABILITIES);
+            if (taxonomy == null) {
+                loadOrComputeTaxonomy();
+            }
+            taxonomyComplete = taxonomy != null;
         } catch (OWLOntologyCreationException e) {
             LOGGER.log(Level.SEVERE, "Ontology creation failed", e);
             throw new RuntimeException("Ontology creation failed", e);
         }
     }
 
+    private boolean loadOntologyFromSnapshot() throws OWLOntologyCreationException {
+        long startTime = System.nanoTime();
+        Optional<OntologySnapshotStore.Snapshot> snapshot = snapshotStore.load(ontologyFile.toPath());
+        if (snapshot.isEmpty()) {
+            return false;
+        }
+        ontology = snapshot.get().restore(ontologyManager);
+        taxonomy = snapshot.get().taxonomy();
+        LOGGER.info("Ontology loaded from snapshot in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+        return true;
+    }
+
     private void loadOntologyFromFile() throws OWLOntologyCreationException {
-        File ontoFile = new File("src/main/java/fit/health/fithealthapi/ontology/health.owl");
-        if (!ontoFile.exists()) {
-            throw new OWLOntologyCreationException("Ontology file not found: " + ontoFile.getAbsolutePath());
+        if (!ontologyFile.exists()) {
+            throw new OWLOntologyCreationException("Ontology file not found: " + ontologyFile.getAbsolutePath());
         }
         try {
-            ontology = ontologyManager.loadOntologyFromOntologyDocument(ontoFile);
-            LOGGER.info("Ontology loaded successfully from " + ontoFile.getAbsolutePath());
+            ontology = ontologyManager.loadOntologyFromOntologyDocument(ontologyFile);
+            LOGGER.info("Ontology loaded successfully from " + ontologyFile.getAbsolutePath());
         } catch (OWLOntologyCreationException e) {
             LOGGER.log(Level.SEVERE, "Failed to load ontology", e);
             throw e;
         }
     }
 
+    /**
+     * Applies the change sets committed after the ontology file was last written.
+     * The replayed state is scheduled for a write so the journal can be compacted.
+     */
+    private void replayJournal() {
+        long startTime = System.nanoTime();
+        int batches = journal.replay(ontologyManager, ontology);
+        if (batches > 0) {
+            LOGGER.info("Replayed " + batches + " ontology journal batches in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+            taxonomy = null;
+            persistenceWriter.markDirty();
+        }
+    }
+
+    /**
+     * Takes the taxonomy from the cache when it was computed for the same axioms. Otherwise it is computed
+     * in the background, and lookups go to the reasoner until it is published.
+     */
+    private void loadOrComputeTaxonomy() {
+        if (taxonomyCache.isEnabled()) {
+            Optional<InferredTaxonomy> cached = taxonomyCache.load(InferredTaxonomyCache.axiomHash(ontology));
+            if (cached.isPresent()) {
+                taxonomy = cached.get();
+                LOGGER.info("Inferred taxonomy loaded from cache, classification skipped");
+                return;
+            }
+        }
+        scheduleTaxonomyRebuild();
+    }
+
     private void initializeReasoner() {
         try {
-            OWLReasonerFactory reasonerFactory = new Reasoner.ReasonerFactory();
+            OWLReasonerFactory reasonerFactory = preferenceReasoner.getReasonerFactory();
             LOGGER.info("Initializing reasoner...");
             reasoner = reasonerFactory.createReasoner(ontology);
             reasoner.precomputeInferences();
@@ -78,17 +205,377 @@ public class OntologyService {
         }
     }
 
+    /**
+     * Creates or flushes the reasoner if needed. Must be called while holding the read lock and the reasoner lock.
+     */
+    private void refreshReasoner() {
+        if (reasoner == null) {
+            initializeReasoner();
+        } else if (reasonerStale) {
+            reasoner.flush();
+        }
+        reasonerStale = false;
+        reasonerVersion = ontologyVersion;
+    }
+
+    /**
+     * Runs a query against the up-to-date reasoner. HermiT classifies lazily while answering, so queries to it
+     * are made one at a time; the taxonomy and per-item classification do not need it.
+     */
+    private <T> T queryReasoner(Function<OWLReasoner, T> query) {
+        Lock readLock = ontologyLock.readLock();
+        readLock.lock();
+        try {
+            synchronized (reasonerLock) {
+                refreshReasoner();
+                return query.apply(reasoner);
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Schedules a background classification of the whole ontology, unless one is already pending.
+     * Changes committed within the delay are covered by the same run.
+     */
+    private void scheduleTaxonomyRebuild() {
+        synchronized (taxonomyRebuilder) {
+            if (!taxonomyRebuilder.isShutdown() && (pendingRebuild == null || pendingRebuild.isDone())) {
+                pendingRebuild = taxonomyRebuilder.schedule(this::rebuildTaxonomy, taxonomyRebuildDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Classifies the ontology and publishes the taxonomy. Only flushing the reasoner holds the read lock; the
+     * classification itself runs on the reasoner's own copy of the axioms, so changes can be committed and
+     * readers keep using the previous taxonomy meanwhile. A result overtaken by a change is dropped, the
+     * change has scheduled another run.
+     */
+    private void rebuildTaxonomy() {
+        try {
+            long startTime = System.nanoTime();
+            long version;
+            Set<OWLClass> classes;
+            ontologyLock.readLock().lock();
+            try {
+                synchronized (reasonerLock) {
+                    refreshReasoner();
+                }
+                version = ontologyVersion;
+                classes = new HashSet<>(ontology.getClassesInSignature());
+            } finally {
+                ontologyLock.readLock().unlock();
+            }
+            InferredTaxonomy rebuilt;
+            synchronized (reasonerLock) {
+                if (reasonerVersion != version) {
+                    return;
+                }
+                rebuilt = InferredTaxonomy.compute(reasoner, classes, owlClass -> getFragment(owlClass.getIRI().toString()));
+            }
+            ontologyLock.readLock().lock();
+            try {
+                if (ontologyVersion != version) {
+                    return;
+                }
+                publishTaxonomy(rebuilt);
+            } finally {
+                ontologyLock.readLock().unlock();
+            }
+            LOGGER.info("Inferred taxonomy of " + rebuilt.size() + " classes rebuilt in "
+                    + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Failed to rebuild inferred taxonomy", e);
+        }
+    }
+
+    /**
+     * Publishes a taxonomy of the current axioms and caches it. Must be called while holding the read lock.
+     */
+    private void publishTaxonomy(InferredTaxonomy complete) {
+        taxonomy = complete;
+        taxonomyComplete = true;
+        taxonomyCache.store(InferredTaxonomyCache.axiomHash(ontology), complete);
+    }
+
+    /**
+     * Makes sure the ontology file, its snapshot and the taxonomy cache are up to date before the writer's
+     * final flush. When only the snapshot or the cache is missing, the ontology file is left untouched.
+     */
+    @PreDestroy
+    public void prepareShutdown() {
+        taxonomyRebuilder.shutdownNow();
+        if (journal.size() > 0 || persistenceWriter.isDirty()) {
+            persistenceWriter.markDirty();
+        } else if (snapshotStore.isEnabled() && !snapshotStore.matches(ontologyFile.toPath())) {
+            OntologySnapshotStore.Snapshot snapshot;
+            ontologyLock.readLock().lock();
+            try {
+                snapshot = OntologySnapshotStore.Snapshot.of(ontologyManager, ontology, currentTaxonomy());
+            } finally {
+                ontologyLock.readLock().unlock();
+            }
+            try {
+                snapshotStore.write(Files.readAllBytes(ontologyFile.toPath()), snapshot);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to write ontology snapshot", e);
+            }
+        } else if (taxonomyCache.isEnabled() && !taxonomyComplete) {
+            ontologyLock.readLock().lock();
+            try {
+                currentTaxonomy();
+            } finally {
+                ontologyLock.readLock().unlock();
+            }
+        }
+    }
+
 
     public String getFragment(String iriString) {
         return iriString.contains("#") ? iriString.substring(iriString.indexOf('#') + 1) : iriString;
     }
 
+    /**
+     * Writes the ontology to disk right away instead of waiting for the background writer.
+     */
     public void saveOntology() {
+        persistenceWriter.markDirty();
+        persistenceWriter.flushNow();
+    }
+
+    /**
+     * Renders the ontology in its original format. Holds the ontology read lock so the document
+     * never contains half of a change set, and records how much of the journal it covers so
+     * those batches can be dropped once the document is on disk. The binary snapshot is taken
+     * at the same point and written after the document.
+     */
+    private OntologyPersistenceWriter.Document renderOntology() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long journalOffset;
+        OntologySnapshotStore.Snapshot snapshot = null;
+        ontologyLock.readLock().lock();
         try {
-            ontologyManager.saveOntology(ontology);
-        } catch (OWLOntologyStorageException e) {
-            throw new RuntimeException("Failed to save ontology: " + e.getMessage(), e);
+            try {
+                ontologyManager.saveOntology(ontology, ontologyManager.getOntologyFormat(ontology), out);
+            } catch (OWLOntologyStorageException e) {
+                throw new RuntimeException("Failed to save ontology: " + e.getMessage(), e);
+            }
+            journalOffset = journal.size();
+            if (snapshotStore.isEnabled()) {
+                snapshot = OntologySnapshotStore.Snapshot.of(ontologyManager, ontology, currentTaxonomy());
+            } else if (taxonomyCache.isEnabled()) {
+                currentTaxonomy();
+            }
+        } finally {
+            ontologyLock.readLock().unlock();
+        }
+        byte[] document = out.toByteArray();
+        OntologySnapshotStore.Snapshot documentSnapshot = snapshot;
+        return new OntologyPersistenceWriter.Document(document, () -> {
+            journal.discardUpTo(journalOffset);
+            if (documentSnapshot != null) {
+                snapshotStore.write(document, documentSnapshot);
+            }
+        });
+    }
+
+    /**
+     * Returns the taxonomy of the current axioms, classifying, publishing and caching it if the ontology
+     * changed since it was last computed. Must be called while holding the ontology read lock.
+     */
+    private InferredTaxonomy currentTaxonomy() {
+        if (!taxonomyComplete) {
+            synchronized (reasonerLock) {
+                refreshReasoner();
+                publishTaxonomy(InferredTaxonomy.compute(reasoner, ontology.getClassesInSignature(),
+                        owlClass -> getFragment(owlClass.getIRI().toString())));
+            }
+        }
+        return taxonomy;
+    }
+
+    /**
+     * Opens a change set that collects every ontology mutation made on the current thread until it is committed.
+     * If a change set is already active on this thread, the returned one joins it.
+     * The outermost change set holds the ontology write lock until it is closed, so mutations from different
+     * threads are serialised and nobody reads a half-applied change set. Must not be called while holding
+     * only the read lock.
+     *
+     * @return The change set, to be used in a try-with-resources block.
+     */
+    public OntologyChangeSet beginChangeSet() {
+        OntologyChangeSet outer = activeChangeSet.get();
+        if (outer == null) {
+            ontologyLock.writeLock().lock();
+        }
+        OntologyChangeSet changeSet = new OntologyChangeSet(this, outer);
+        if (!changeSet.isNested()) {
+            activeChangeSet.set(changeSet);
+        }
+        return changeSet;
+    }
+
+    void commitChangeSet(OntologyChangeSet changeSet) {
+        if (changeSet.getChanges().isEmpty()) {
+            return;
+        }
+        ontologyLock.writeLock().lock();
+        try {
+            journal.append(changeSet.getChanges());
+            changesApplied(changeSet.getChanges());
+        } finally {
+            ontologyLock.writeLock().unlock();
+        }
+        if (journal.needsCompaction()) {
+            persistenceWriter.markDirty();
+        }
+    }
+
+    void rollbackChangeSet(OntologyChangeSet changeSet) {
+        List<OWLOntologyChange> inverse = changeSet.inverseChanges();
+        if (!inverse.isEmpty()) {
+            LOGGER.warning("Rolling back " + inverse.size() + " uncommitted ontology changes");
+            ontologyLock.writeLock().lock();
+            try {
+                ontologyManager.applyChanges(inverse);
+                changesApplied(inverse);
+            } finally {
+                ontologyLock.writeLock().unlock();
+            }
+            // A document rendered in the meantime may contain the reverted changes
+            persistenceWriter.markDirty();
+        }
+    }
+
+    /**
+     * Publishes a copy of the taxonomy without the classes whose inferences the changes may affect, or no
+     * taxonomy at all if that can be any class, and schedules a rebuild that adds them back.
+     * Must be called while holding the ontology write lock, after the changes are applied.
+     */
+    private void changesApplied(List<? extends OWLOntologyChange> changes) {
+        ontologyVersion++;
+        // Reloading the whole ontology into HermiT is left to the next query or rebuild that needs it
+        reasonerStale = true;
+        Set<String> affectedClasses = invalidateInferences(changes);
+        InferredTaxonomy current = taxonomy;
+        taxonomy = current == null || affectedClasses == null ? null : current.without(affectedClasses);
+        taxonomyComplete = false;
+        scheduleTaxonomyRebuild();
+    }
+
+    /**
+     * Drops the cached preferences of the items defined by the changed axioms, and of every item whose
+     * definition refers to one of them, e.g. a recipe using a changed food item as an ingredient.
+     * A change to anything but an item definition (a preference class, a property, the allergen hierarchy)
+     * can change the inferences of every item, so it clears the whole cache.
+     * Must be called while holding the ontology write lock, after the changes are applied.
+     *
+     * @return The names of the invalidated classes, or null if everything was invalidated.
+     */
+    private Set<String> invalidateInferences(List<? extends OWLOntologyChange> changes) {
+        Set<OWLClass> changedItems = new HashSet<>();
+        Set<OWLAxiom> changedAxioms = changes.stream()
+                .filter(OWLOntologyChange::isAxiomChange)
+                .map(OWLOntologyChange::getAxiom)
+                .collect(Collectors.toSet());
+        for (OWLOntologyChange change : changes) {
+            if (!change.isAxiomChange()) {
+                invalidateAllInferences();
+                return null;
+            }
+            OWLAxiom axiom = change.getAxiom();
+            if (axiom.isOfType(AxiomType.DECLARATION) || axiom.isOfType(AxiomType.ANNOTATION_ASSERTION)) {
+                continue;
+            }
+            Set<OWLClass> definedClasses = getDefinedClasses(axiom);
+            if (definedClasses.isEmpty() || !definedClasses.stream().allMatch(owlClass -> isItemClass(owlClass, changedAxioms))) {
+                invalidateAllInferences();
+                return null;
+            }
+            changedItems.addAll(definedClasses);
+        }
+
+        Deque<OWLClass> pending = new ArrayDeque<>(changedItems);
+        while (!pending.isEmpty()) {
+            for (OWLAxiom axiom : ontology.getReferencingAxioms(pending.pop())) {
+                for (OWLClass dependent : getDefinedClasses(axiom)) {
+                    if (isItemClass(dependent, changedAxioms) && changedItems.add(dependent)) {
+                        pending.push(dependent);
+                    }
+                }
+            }
+        }
+        Set<String> changedNames = changedItems.stream()
+                .map(owlClass -> getFragment(owlClass.getIRI().toString()))
+                .collect(Collectors.toSet());
+        preferencesCache.invalidate(changedNames);
+        return changedNames;
+    }
+
+    private void invalidateAllInferences() {
+        preferencesCache.invalidateAll();
+        preferenceClassifier.invalidateVocabulary();
+    }
+
+    /**
+     * @return The named classes an axiom defines or restricts, empty for any other kind of axiom.
+     */
+    private Set<OWLClass> getDefinedClasses(OWLAxiom axiom) {
+        if (axiom instanceof OWLSubClassOfAxiom subClassOfAxiom && !subClassOfAxiom.getSubClass().isAnonymous()) {
+            return Set.of(subClassOfAxiom.getSubClass().asOWLClass());
         }
+        if (axiom instanceof OWLEquivalentClassesAxiom equivalentClassesAxiom) {
+            return equivalentClassesAxiom.getNamedClasses();
+        }
+        return Collections.emptySet();
+    }
+
+    private boolean isItemClass(OWLClass owlClass) {
+        return isItemClass(owlClass, Collections.emptySet());
+    }
+
+    /**
+     * A food item or recipe is asserted as a direct subclass of FoodItem or Recipe, in the ontology
+     * or in the changes that just removed it.
+     */
+    private boolean isItemClass(OWLClass owlClass, Set<OWLAxiom> changedAxioms) {
+        OWLClass foodItem = getOWLClass("FoodItem");
+        OWLClass recipe = getOWLClass("Recipe");
+        return Stream.concat(ontology.getSubClassAxiomsForSubClass(owlClass).stream(), changedAxioms.stream()
+                        .filter(axiom -> axiom instanceof OWLSubClassOfAxiom)
+                        .map(axiom -> (OWLSubClassOfAxiom) axiom)
+                        .filter(axiom -> axiom.getSubClass().equals(owlClass)))
+                .map(OWLSubClassOfAxiom::getSuperClass)
+                .anyMatch(superClass -> superClass.equals(foodItem) || superClass.equals(recipe));
+    }
+
+    void endChangeSet(OntologyChangeSet changeSet) {
+        if (activeChangeSet.get() == changeSet) {
+            activeChangeSet.remove();
+            ontologyLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies the changes within the current change set, or within one of their own.
+     *
+     * @param changes Builds the changes. Called under the write lock, so it may read the ontology.
+     */
+    private void applyChanges(Supplier<List<? extends OWLOntologyChange>> changes) {
+        try (OntologyChangeSet changeSet = beginChangeSet()) {
+            changeSet.record(ontologyManager.applyChanges(changes.get()));
+            changeSet.commit();
+        }
+    }
+
+    private void applyChanges(List<? extends OWLOntologyChange> changes) {
+        applyChanges(() -> changes);
+    }
+
+    private void applyChange(OWLOntologyChange change) {
+        applyChanges(List.of(change));
     }
 
     public OWLClass getOWLClass(String className) {
@@ -105,11 +592,7 @@ public class OntologyService {
         OWLClass parentClass = getOWLClass(parentClassName);
         OWLSubClassOfAxiom axiom = dataFactory.getOWLSubClassOfAxiom(newItemClass, parentClass);
 
-        ontologyManager.applyChange(new AddAxiom(ontology, axiom));
-        saveOntology();
-
-        // Flush reasoner instead of full precompute
-        reasoner.flush();
+        applyChange(new AddAxiom(ontology, axiom));
     }
 
     /**
@@ -120,22 +603,21 @@ public class OntologyService {
     public void convertToDefinedClass(String className) {
         OWLClass owlClass = dataFactory.getOWLClass(IRI.create(ontologyIRI + className));
 
-        Set<OWLClassExpression> restrictions = ontology.getAxioms(owlClass).stream()
-                .filter(axiom -> axiom.isOfType(AxiomType.SUBCLASS_OF))
-                .map(axiom -> ((OWLSubClassOfAxiom) axiom).getSuperClass())
-                .collect(Collectors.toSet());
-
-        if (restrictions.isEmpty()) {
-            LOGGER.warning("No subclass restrictions found for " + className);
-            return;
-        }
+        applyChanges(() -> {
+            Set<OWLClassExpression> restrictions = ontology.getAxioms(owlClass).stream()
+                    .filter(axiom -> axiom.isOfType(AxiomType.SUBCLASS_OF))
+                    .map(axiom -> ((OWLSubClassOfAxiom) axiom).getSuperClass())
+                    .collect(Collectors.toSet());
 
-        OWLEquivalentClassesAxiom equivalentClassesAxiom = dataFactory.getOWLEquivalentClassesAxiom(
-                owlClass, dataFactory.getOWLObjectIntersectionOf(restrictions));
-        ontologyManager.addAxiom(ontology, equivalentClassesAxiom);
+            if (restrictions.isEmpty()) {
+                LOGGER.warning("No subclass restrictions found for " + className);
+                return List.of();
+            }
 
-        saveOntology();
-        reasoner.flush();
+            OWLEquivalentClassesAxiom equivalentClassesAxiom = dataFactory.getOWLEquivalentClassesAxiom(
+                    owlClass, dataFactory.getOWLObjectIntersectionOf(restrictions));
+            return List.of(new AddAxiom(ontology, equivalentClassesAxiom));
+        });
     }
     /**
      * Remove a defined class to a class (EquivalentClass)
@@ -145,13 +627,7 @@ public class OntologyService {
     public void removeDefinedClass(String className) {
         OWLClass owlClass = getOWLClass(className);
 
-        Set<OWLEquivalentClassesAxiom> axiomsToRemove = ontology.getEquivalentClassesAxioms(owlClass);
-        for (OWLEquivalentClassesAxiom axiom : axiomsToRemove) {
-            ontologyManager.applyChange(new RemoveAxiom(ontology, axiom));
-        }
-
-        saveOntology();
-        reasoner.flush();
+        applyChanges(() -> toRemoveChanges(ontology.getEquivalentClassesAxioms(owlClass)));
     }
 
 
@@ -165,14 +641,11 @@ public class OntologyService {
      * Example: renameItem("Broccoli", "NewBroccoli");
      */
     public void renameItem(String oldName, String newName) {
-        OWLEntityRenamer renamer = new OWLEntityRenamer(ontologyManager, ontology.getImportsClosure());
         IRI oldIRI = IRI.create(ontologyIRI + oldName);
         IRI newIRI = IRI.create(ontologyIRI + newName);
 
         // Apply renaming changes
-        ontologyManager.applyChanges(renamer.changeIRI(oldIRI, newIRI));
-        saveOntology();
-        reasoner.flush();
+        applyChanges(() -> new OWLEntityRenamer(ontologyManager, ontology.getImportsClosure()).changeIRI(oldIRI, newIRI));
     }
 
     /**
@@ -201,7 +674,7 @@ public class OntologyService {
         OWLClassExpression restriction = dataFactory.getOWLDataHasValue(dataProperty, literal);
 
         OWLAxiom axiom = dataFactory.getOWLSubClassOfAxiom(targetClass, restriction);
-        ontologyManager.applyChange(new AddAxiom(ontology, axiom));
+        applyChange(new AddAxiom(ontology, axiom));
     }
 
     /**
@@ -214,7 +687,7 @@ public class OntologyService {
 
         OWLClassExpression restriction = dataFactory.getOWLObjectSomeValuesFrom(objectProperty, relatedClass);
         OWLAxiom axiom = dataFactory.getOWLSubClassOfAxiom(targetClass, restriction);
-        ontologyManager.applyChange(new AddAxiom(ontology, axiom));
+        applyChange(new AddAxiom(ontology, axiom));
     }
 
     public void addIngredientsAsOnlyUnionRestriction(
@@ -264,73 +737,67 @@ public class OntologyService {
         OWLAxiom onlyAxiom = dataFactory.getOWLSubClassOfAxiom(recipeClass, onlyRestriction);
 
         // 6) Add axiom to the ontology
-        ontologyManager.addAxiom(ontology, onlyAxiom);
+        applyChange(new AddAxiom(ontology, onlyAxiom));
+    }
+
+    private static <E extends Enum<E>> Map<String, E> byName(E[] values) {
+        return Arrays.stream(values).collect(Collectors.toUnmodifiableMap(Enum::name, value -> value));
     }
 
     /**
      * Check if a class name is a valid DietaryPreference.
      */
     public boolean isDietaryPreference(String className) {
-        try {
-            DietaryPreference.valueOf(className.toUpperCase());
-            return true;
-        } catch (IllegalArgumentException e) {
-            return false;
-        }
+        return DIETARY_PREFERENCES.containsKey(className.toUpperCase());
     }
+
     public boolean isAllergen(String className) {
-        try {
-            Allergen.valueOf(className.toUpperCase());
-            return true;
-        } catch (IllegalArgumentException e) {
-            return false;
-        }
+        return ALLERGENS.containsKey(className.toUpperCase());
     }
 
     public boolean isHealthConditionSuitability(String className){
-        try {
-            HealthConditionSuitability.valueOf(className.toUpperCase());
-            return true;
-        } catch (IllegalArgumentException e) {
-            return false;
-        }
+        return HEALTH_CONDITION_SUITABILITIES.containsKey(className.toUpperCase());
     }
 
     public boolean isHealthCondition(String className){
-        try {
-            HealthCondition.valueOf(className.toUpperCase());
-            return true;
-        } catch (IllegalArgumentException e) {
-            return false;
-        }
+        return HEALTH_CONDITIONS.containsKey(className.toUpperCase());
     }
 
     public void removeDataPropertyRestrictions(String className){
         OWLClass owlClass = getOWLClass(className);
-        Set<OWLSubClassOfAxiom> axiomsToRemove = ontology.getAxioms(owlClass).stream()
+        applyChanges(() -> toRemoveChanges(ontology.getAxioms(owlClass).stream()
                 .filter(axiom -> axiom.isOfType(AxiomType.SUBCLASS_OF))
                 .map(axiom -> (OWLSubClassOfAxiom) axiom)
                 .filter(axiom -> axiom.getSuperClass() instanceof OWLDataHasValue)
-                .collect(Collectors.toSet());
-
-        for (OWLSubClassOfAxiom axiom : axiomsToRemove) {
-            ontologyManager.applyChange(new RemoveAxiom(ontology, axiom));
-        }
-        saveOntology();
-        reasoner.flush();
+                .collect(Collectors.toSet())));
     }
+    /**
+     * Replaces the value restrictions of one data property of a class with a restriction to the given value.
+     */
+    public void replaceDataPropertyRestriction(String className, String propertyName, Object value) {
+        OWLClass owlClass = getOWLClass(className);
+        OWLDataProperty dataProperty = dataFactory.getOWLDataProperty(IRI.create(ontologyIRI + propertyName));
+        applyChanges(() -> toRemoveChanges(ontology.getAxioms(owlClass).stream()
+                .filter(axiom -> axiom.isOfType(AxiomType.SUBCLASS_OF))
+                .map(axiom -> (OWLSubClassOfAxiom) axiom)
+                .filter(axiom -> axiom.getSuperClass() instanceof OWLDataHasValue hasValue
+                        && hasValue.getProperty().equals(dataProperty))
+                .collect(Collectors.toSet())));
+        addDataPropertyRestriction(className, propertyName, value);
+    }
+
     public void removeObjectPropertyRestrictions(String className){
         OWLClass owlClass = getOWLClass(className);
-        Set<OWLSubClassOfAxiom> axiomsToRemove = ontology.getAxioms(owlClass).stream()
+        applyChanges(() -> toRemoveChanges(ontology.getAxioms(owlClass).stream()
                 .filter(axiom -> axiom.isOfType(AxiomType.SUBCLASS_OF))
                 .map(axiom -> (OWLSubClassOfAxiom) axiom)
-                .collect(Collectors.toSet());
+                .collect(Collectors.toSet())));
+    }
 
-        for (OWLSubClassOfAxiom axiom : axiomsToRemove) {
-            ontologyManager.applyChange(new RemoveAxiom(ontology, axiom));
-        }
-        saveOntology();
-        reasoner.flush();
+    private List<OWLOntologyChange> toRemoveChanges(Set<? extends OWLAxiom> axioms) {
+        return axioms.stream()
+                .map(axiom -> (OWLOntologyChange) new RemoveAxiom(ontology, axiom))
+                .toList();
     }
 
 
@@ -344,14 +811,17 @@ public class OntologyService {
         OWLClass itemClass = dataFactory.getOWLClass(IRI.create(ontologyIRI + itemName));
         OWLClass newParentClass = dataFactory.getOWLClass(IRI.create(ontologyIRI + newParentName));
 
-        ontology.getAxioms(itemClass).stream()
-                .filter(axiom -> axiom.isOfType(AxiomType.SUBCLASS_OF))
-                .forEach(axiom -> ontologyManager.applyChange(new RemoveAxiom(ontology, axiom)));
-
-        // Add the new subclass axiom
-        OWLSubClassOfAxiom newAxiom = dataFactory.getOWLSubClassOfAxiom(itemClass, newParentClass);
-        ontologyManager.applyChange(new AddAxiom(ontology, newAxiom));
-        saveOntology();
+        applyChanges(() -> {
+            List<OWLOntologyChange> changes = new ArrayList<>();
+            ontology.getAxioms(itemClass).stream()
+                    .filter(axiom -> axiom.isOfType(AxiomType.SUBCLASS_OF))
+                    .forEach(axiom -> changes.add(new RemoveAxiom(ontology, axiom)));
+
+            // Add the new subclass axiom
+            OWLSubClassOfAxiom newAxiom = dataFactory.getOWLSubClassOfAxiom(itemClass, newParentClass);
+            changes.add(new AddAxiom(ontology, newAxiom));
+            return changes;
+        });
     }
 
     /**
@@ -361,11 +831,12 @@ public class OntologyService {
      */
     public void deleteItem(String className) {
         OWLClass classToRemove = dataFactory.getOWLClass(IRI.create(ontologyIRI + className));
-        OWLEntityRemover remover = new OWLEntityRemover(ontologyManager, ontology.getImportsClosure());
 
-        classToRemove.accept(remover);
-        ontologyManager.applyChanges(remover.getChanges());
-        saveOntology();
+        applyChanges(() -> {
+            OWLEntityRemover remover = new OWLEntityRemover(ontologyManager, ontology.getImportsClosure());
+            classToRemove.accept(remover);
+            return remover.getChanges();
+        });
     }
 
     /**
@@ -376,12 +847,17 @@ public class OntologyService {
      */
     public Set<String> getSuperClasses(String className) {
         try {
+            InferredTaxonomy currentTaxonomy = taxonomy;
+            if (currentTaxonomy != null && currentTaxonomy.getSuperClasses(className) != null) {
+                return currentTaxonomy.getSuperClasses(className);
+            }
+
             OWLClass targetClass = getOWLClass(className);
 
             long startTime = System.nanoTime();
 
             // Fetch direct superclasses
-            NodeSet<OWLClass> superClasses = reasoner.getSuperClasses(targetClass, false);
+            NodeSet<OWLClass> superClasses = queryReasoner(reasoner -> reasoner.getSuperClasses(targetClass, false));
 
             // End the timer
             long endTime = System.nanoTime();
@@ -401,23 +877,127 @@ public class OntologyService {
 
     /**
      * Infers dietary preferences and health condition suitabilities for a given class name.
+     * Served from the cache unless an axiom the class depends on changed since it was last inferred.
      * @param className The name of the class in the ontology.
      * @return An InferredPreferences object containing the inferred preferences.
      */
     public InferredPreferences inferPreferences(String className) {
+        InferredPreferences inferred = preferencesCache.get(className, this::inferPreferencesUncached);
+        // Callers hand these sets to entities, which must not share them with the cache
+        return new InferredPreferences(new HashSet<>(inferred.getDietaryPreferences()),
+                new HashSet<>(inferred.getHealthConditionSuitabilities()));
+    }
+
+    /**
+     * Infers the preferences of a batch of classes. In incremental mode the modules of the classes that are not
+     * cached are extracted under a single read lock and handed to the reasoner backend as one batch.
+     * @param classNames The names of the classes in the ontology.
+     * @return The inferred preferences by class name.
+     */
+    public Map<String, InferredPreferences> inferPreferences(Collection<String> classNames) {
+        Map<String, InferredPreferences> inferred = new LinkedHashMap<>();
+        preferencesCache.getAll(classNames, this::inferPreferencesUncached).forEach((className, preferences) ->
+                inferred.put(className, new InferredPreferences(new HashSet<>(preferences.getDietaryPreferences()),
+                        new HashSet<>(preferences.getHealthConditionSuitabilities()))));
+        return inferred;
+    }
+
+    private Map<String, InferredPreferences> inferPreferencesUncached(Collection<String> classNames) {
+        Map<String, InferredPreferences> inferred = new LinkedHashMap<>();
+        if (!incrementalReasoning || classNames.size() == 1) {
+            classNames.forEach(className -> inferred.put(className, inferPreferencesUncached(className)));
+            return inferred;
+        }
+        InferredTaxonomy currentTaxonomy = taxonomy;
+        Map<OWLClass, String> items = new HashMap<>();
+        Map<OWLClass, ClassificationModule> modules = new LinkedHashMap<>();
+        ontologyLock.readLock().lock();
+        try {
+            for (String className : classNames) {
+                OWLClass owlClass = getOWLClass(className);
+                if ((currentTaxonomy == null || currentTaxonomy.getSuperClasses(className) == null) && isItemClass(owlClass)) {
+                    items.put(owlClass, className);
+                    modules.put(owlClass, preferenceClassifier.extractModule(owlClass));
+                }
+            }
+        } finally {
+            ontologyLock.readLock().unlock();
+        }
+
+        if (!modules.isEmpty()) {
+            long startTime = System.nanoTime();
+            preferenceReasoner.classifyAll(modules)
+                    .forEach((owlClass, preferences) -> inferred.put(items.get(owlClass), preferences));
+            LOGGER.info("Incremental classification of " + modules.size() + " items by the " + preferenceReasoner.getName()
+                    + " reasoner took " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+        }
+        for (String className : classNames) {
+            if (!inferred.containsKey(className)) {
+                inferred.put(className, inferPreferencesFromSuperClasses(className));
+            } else if (verifyIncrementalReasoning) {
+                inferred.put(className, verified(className, inferred.get(className)));
+            }
+        }
+        return inferred;
+    }
+
+    /**
+     * Uses the taxonomy while it is valid. Otherwise a food item or recipe is classified on its own in
+     * incremental mode, and anything else, or everything in full mode, goes through the full reasoner.
+     */
+    private InferredPreferences inferPreferencesUncached(String className) {
+        InferredTaxonomy currentTaxonomy = taxonomy;
+        if (!incrementalReasoning || (currentTaxonomy != null && currentTaxonomy.getSuperClasses(className) != null)) {
+            return inferPreferencesFromSuperClasses(className);
+        }
+        OWLClass owlClass = getOWLClass(className);
+        ClassificationModule module;
+        ontologyLock.readLock().lock();
+        try {
+            module = isItemClass(owlClass) ? preferenceClassifier.extractModule(owlClass) : null;
+        } finally {
+            ontologyLock.readLock().unlock();
+        }
+        if (module == null) {
+            return inferPreferencesFromSuperClasses(className);
+        }
+
+        long startTime = System.nanoTime();
+        InferredPreferences inferred = preferenceReasoner.classify(owlClass, module);
+        LOGGER.info("Incremental classification of " + className + " by the " + preferenceReasoner.getName()
+                + " reasoner over " + module.size() + " axioms took "
+                + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+
+        return verifyIncrementalReasoning ? verified(className, inferred) : inferred;
+    }
+
+    /**
+     * Checks an incremental classification against the full reasoner, preferring the latter when they differ.
+     */
+    private InferredPreferences verified(String className, InferredPreferences inferred) {
+        InferredPreferences verified = inferPreferencesFromSuperClasses(className);
+        if (!verified.getDietaryPreferences().equals(inferred.getDietaryPreferences())
+                || !verified.getHealthConditionSuitabilities().equals(inferred.getHealthConditionSuitabilities())) {
+            LOGGER.warning("Incremental classification of " + className + " differs from the full reasoner: "
+                    + inferred.getDietaryPreferences() + inferred.getHealthConditionSuitabilities() + " vs "
+                    + verified.getDietaryPreferences() + verified.getHealthConditionSuitabilities());
+            return verified;
+        }
+        return inferred;
+    }
+
+    private InferredPreferences inferPreferencesFromSuperClasses(String className) {
         Set<String> superClasses = this.getSuperClasses(className);
 
         Set<DietaryPreference> dietaryPreferences = superClasses.stream()
-                .filter(this::isDietaryPreference)
-                .map(String::toUpperCase)
-                .map(DietaryPreference::valueOf)
-                .collect(Collectors.toSet());
+                .map(superClass -> DIETARY_PREFERENCES.get(superClass.toUpperCase()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toUnmodifiableSet());
 
         Set<HealthConditionSuitability> healthConditionSuitabilities = superClasses.stream()
-                .filter(this::isHealthConditionSuitability)
-                .map(String::toUpperCase)
-                .map(HealthConditionSuitability::valueOf)
-                .collect(Collectors.toSet());
+                .map(superClass -> HEALTH_CONDITION_SUITABILITIES.get(superClass.toUpperCase()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toUnmodifiableSet());
 
         return new InferredPreferences(dietaryPreferences, healthConditionSuitabilities);
     }
@@ -0,0 +1,150 @@
+package fit.health.fithealthapi.services;
+
+import org.semanticweb.owlapi.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary copy of the ontology, written next to the ontology file whenever a full document is written.
+ * It holds the serialised axioms and the inferred taxonomy, and is only used while the checksum of the
+ * ontology file it was taken from still matches; otherwise the ontology is parsed from the file as before.
+ */
+@Component
+public class OntologySnapshotStore {
+
+    private static final Logger LOGGER = Logger.getLogger(OntologySnapshotStore.class.getName());
+
+    private static final int MAGIC = 0x4F534E50;
+    private static final int VERSION = 1;
+
+    private final boolean enabled;
+
+    private Path file;
+
+    public OntologySnapshotStore(@Value("${ontology.snapshot.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Everything needed to rebuild the ontology without parsing the document.
+     */
+    public record Snapshot(IRI ontologyIRI, OWLOntologyFormat format, Set<OWLAnnotation> annotations,
+                           Set<OWLAxiom> axioms, InferredTaxonomy taxonomy) implements Serializable {
+
+        public static Snapshot of(OWLOntologyManager manager, OWLOntology ontology, InferredTaxonomy taxonomy) {
+            return new Snapshot(ontology.getOntologyID().getOntologyIRI(), manager.getOntologyFormat(ontology),
+                    new HashSet<>(ontology.getAnnotations()), new HashSet<>(ontology.getAxioms()), taxonomy);
+        }
+
+        /**
+         * Creates the ontology in the given manager.
+         */
+        public OWLOntology restore(OWLOntologyManager manager) throws OWLOntologyCreationException {
+            OWLOntology ontology = manager.createOntology(axioms, ontologyIRI);
+            List<OWLOntologyChange> changes = new ArrayList<>();
+            for (OWLAnnotation annotation : annotations) {
+                changes.add(new AddOntologyAnnotation(ontology, annotation));
+            }
+            manager.applyChanges(changes);
+            manager.setOntologyFormat(ontology, format);
+            return ontology;
+        }
+    }
+
+    void attach(Path file) {
+        this.file = file;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return Whether a snapshot exists for the current content of the source document.
+     */
+    public boolean matches(Path source) {
+        if (!enabled || file == null || !Files.exists(file) || !Files.exists(source)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION
+                    && in.readLong() == checksum(Files.readAllBytes(source));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the snapshot if it was taken from the current content of the source document.
+     *
+     * @param source The ontology file the snapshot must match.
+     */
+    public Optional<Snapshot> load(Path source) {
+        if (!enabled || file == null || !Files.exists(file) || !Files.exists(source)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.info("Ignoring ontology snapshot with an unknown format");
+                return Optional.empty();
+            }
+            long sourceChecksum = in.readLong();
+            if (sourceChecksum != checksum(Files.readAllBytes(source))) {
+                LOGGER.info("Ontology snapshot is out of date, loading " + source);
+                return Optional.empty();
+            }
+            return Optional.of((Snapshot) new ObjectInputStream(in).readObject());
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOGGER.log(Level.WARNING, "Failed to read ontology snapshot, loading " + source, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Replaces the snapshot with one taken from the given document.
+     *
+     * @param document The ontology document as written to the source file.
+     */
+    public void write(byte[] document, Snapshot snapshot) {
+        if (!enabled || file == null) {
+            return;
+        }
+        try {
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeLong(checksum(document));
+                    ObjectOutputStream objects = new ObjectOutputStream(out);
+                    objects.writeObject(snapshot);
+                    objects.flush();
+                }
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write ontology snapshot", e);
+        }
+    }
+
+    private static long checksum(byte[] content) {
+        CRC32C crc = new CRC32C();
+        crc.update(content);
+        return (long) content.length << 32 ^ crc.getValue();
+    }
+}
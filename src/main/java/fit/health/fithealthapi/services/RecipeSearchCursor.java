@@ -0,0 +1,38 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.exceptions.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * Position of a recipe in the order search results are returned in: by calories (highest first for weight gain
+ * goals), then by total time, then by number of likes, highest first, then by ID. A page of results starts right
+ * after the cursor of the last recipe of the previous page, which the client gets back as an opaque string.
+ */
+record RecipeSearchCursor(float calories, int totalTime, long likes, long id) {
+
+    static Comparator<RecipeSearchCursor> order(boolean gaining) {
+        Comparator<RecipeSearchCursor> byCalories = Comparator.comparingDouble(RecipeSearchCursor::calories);
+        return (gaining ? byCalories.reversed() : byCalories)
+                .thenComparingInt(RecipeSearchCursor::totalTime)
+                .thenComparing(Comparator.comparingLong(RecipeSearchCursor::likes).reversed())
+                .thenComparingLong(RecipeSearchCursor::id);
+    }
+
+    String encode() {
+        String value = calories + ":" + totalTime + ":" + likes + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static RecipeSearchCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            return new RecipeSearchCursor(Float.parseFloat(parts[0]), Integer.parseInt(parts[1]),
+                    Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidRequestException("Invalid search cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,645 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.FoodItem;
+import fit.health.fithealthapi.model.Recipe;
+import fit.health.fithealthapi.model.RecipeIngredient;
+import fit.health.fithealthapi.model.dto.RecipeSearchRequest;
+import fit.health.fithealthapi.model.enums.Allergen;
+import fit.health.fithealthapi.model.enums.DietaryPreference;
+import fit.health.fithealthapi.model.enums.HealthConditionSuitability;
+import fit.health.fithealthapi.model.enums.IngredientMatch;
+import fit.health.fithealthapi.model.enums.RecipeType;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Answers the filters of a recipe search from memory. Every indexed recipe gets a slot; each dietary preference,
+ * allergen, health condition suitability, recipe type and ingredient has a bitset of the slots of the recipes
+ * that have it, and the slots are also kept sorted by calories and by total time for range filters. A search is
+ * then a few bitset operations plus two binary searches. Names are searched by {@link NameSearchIndex}, whose
+ * matches are passed in by ID.
+ * <p>
+ * Ingredients are indexed by food item ID, with a separate map from food item names to IDs, so that renaming or
+ * deleting a food item does not require reindexing its recipes. The index is loaded on first use and kept up to
+ * date by the services that change recipes and food items.
+ */
+@Component
+public class RecipeSearchIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Null when searches run on the calling thread only
+    private final ForkJoinPool searchPool;
+    private final int parallelThreshold;
+
+    private boolean loaded;
+    private final Map<Long, Integer> slotsByRecipe = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final BitSet occupied = new BitSet();
+    private long[] recipeIds = new long[1024];
+    private float[] calories = new float[1024];
+    private int[] totalTimes = new int[1024];
+    private long[][] ingredientIds = new long[1024][];
+    private int slotCount;
+
+    private final Map<DietaryPreference, BitSet> byDietaryPreference = new EnumMap<>(DietaryPreference.class);
+    private final Map<Allergen, BitSet> byAllergen = new EnumMap<>(Allergen.class);
+    private final Map<HealthConditionSuitability, BitSet> byHealthConditionSuitability = new EnumMap<>(HealthConditionSuitability.class);
+    private final Map<RecipeType, BitSet> byRecipeType = new EnumMap<>(RecipeType.class);
+    private final Map<Long, BitSet> byFoodItem = new HashMap<>();
+    private final Map<Long, String> foodItemNames = new HashMap<>();
+    private final Map<String, Set<Long>> foodItemsByName = new HashMap<>();
+
+    // Rebuilt by the first search after a change
+    private boolean sortedArraysStale = true;
+    private int[] slotsByCalories = new int[0];
+    private float[] sortedCalories = new float[0];
+    private int[] slotsByTotalTime = new int[0];
+    private int[] sortedTotalTimes = new int[0];
+
+    /**
+     * An index whose searches all run on the calling thread.
+     */
+    public RecipeSearchIndex() {
+        this(1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param parallelism       Threads of the search pool, the number of processors if 0; 1 disables the pool.
+     * @param parallelThreshold Fewest recipes to scan for a search to be split over the pool.
+     */
+    @Autowired
+    public RecipeSearchIndex(@Value("${recipes.search.parallelism:1}") int parallelism,
+                             @Value("${recipes.search.parallel-threshold:50000}") int parallelThreshold) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.searchPool = threads == 1 ? null : new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("recipe-search-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (searchPool != null) {
+            searchPool.shutdown();
+        }
+    }
+
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the content of the index. The recipes' ingredients and their food items must be loaded.
+     */
+    public void load(Collection<Recipe> recipes) {
+        lock.writeLock().lock();
+        try {
+            slotsByRecipe.clear();
+            freeSlots.clear();
+            occupied.clear();
+            slotCount = 0;
+            byDietaryPreference.clear();
+            byAllergen.clear();
+            byHealthConditionSuitability.clear();
+            byRecipeType.clear();
+            byFoodItem.clear();
+            foodItemNames.clear();
+            foodItemsByName.clear();
+            recipes.forEach(this::index);
+            sortedArraysStale = true;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes a new recipe or reindexes a changed one. Ignored until the index is loaded, as loading reads
+     * the recipe anyway.
+     */
+    public void put(Recipe recipe) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            unindex(recipe.getId());
+            index(recipe);
+            sortedArraysStale = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long recipeId) {
+        lock.writeLock().lock();
+        try {
+            if (unindex(recipeId)) {
+                sortedArraysStale = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the calories of recipes whose nutrition changed with one of their food items.
+     */
+    public void caloriesChanged(Map<Long, Float> caloriesByRecipe) {
+        lock.writeLock().lock();
+        try {
+            caloriesByRecipe.forEach((recipeId, recipeCalories) -> {
+                Integer slot = slotsByRecipe.get(recipeId);
+                if (slot != null) {
+                    calories[slot] = recipeCalories;
+                    sortedArraysStale = true;
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Makes ingredient name searches find the recipes of a food item by its new name.
+     */
+    public void foodItemRenamed(Long foodItemId, String name) {
+        lock.writeLock().lock();
+        try {
+            if (byFoodItem.containsKey(foodItemId)) {
+                nameFoodItem(foodItemId, name);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops a deleted food item from the ingredients of every recipe.
+     */
+    public void foodItemRemoved(Long foodItemId) {
+        lock.writeLock().lock();
+        try {
+            BitSet recipes = byFoodItem.remove(foodItemId);
+            if (recipes == null) {
+                return;
+            }
+            for (int slot = recipes.nextSetBit(0); slot >= 0; slot = recipes.nextSetBit(slot + 1)) {
+                ingredientIds[slot] = Arrays.stream(ingredientIds[slot]).filter(id -> id != foodItemId).toArray();
+            }
+            nameFoodItem(foodItemId, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the IDs of the recipes matching every filter of the request, in no particular order.
+     * Filters that are null or empty are ignored, as by {@link RecipeService#searchRecipes}.
+     *
+     * @param named The IDs of the recipes matching the request's name, null to ignore the name.
+     */
+    public List<Long> search(RecipeSearchRequest request, Collection<Long> named) {
+        lock.readLock().lock();
+        try {
+            ensureSorted();
+            BitSet matching = matchingSlots(request, named);
+            List<Long> ids = new ArrayList<>(matching.cardinality());
+            for (int slot = matching.nextSetBit(0); slot >= 0; slot = matching.nextSetBit(slot + 1)) {
+                ids.add(recipeIds[slot]);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the first {@code count} recipes matching the request in the order of {@link RecipeSearchCursor},
+     * after {@code after} if not null. The matching recipes are visited by calories, best first, through a heap
+     * holding the best {@code count} seen so far; once the heap is full, the first recipe with worse calories than
+     * the worst one kept ends the scan, as no recipe after it can make it into the page.
+     * <p>
+     * When more than {@code recipes.search.parallel-threshold} recipes are in the calorie range to scan, the range is
+     * split into partitions scanned the same way on the search pool, and their heaps are merged.
+     *
+     * @param named The IDs of the recipes matching the request's name, null to ignore the name.
+     * @param likes Number of likes of a recipe, by ID.
+     */
+    public List<RecipeSearchCursor> searchTop(RecipeSearchRequest request, Collection<Long> named, boolean gaining,
+                                              RecipeSearchCursor after, int count, ToLongFunction<Long> likes) {
+        Comparator<RecipeSearchCursor> order = RecipeSearchCursor.order(gaining);
+        PriorityQueue<RecipeSearchCursor> best;
+        lock.readLock().lock();
+        try {
+            ensureSorted();
+            TopScan scan = new TopScan(matchingSlots(request, named), gaining, after, count, likes, order);
+            // Recipes with better calories than the cursor were on earlier pages
+            int from = 0;
+            int to = sortedCalories.length;
+            if (after != null && gaining) {
+                to = upperBound(sortedCalories, after.calories());
+            } else if (after != null) {
+                from = lowerBound(sortedCalories, after.calories());
+            }
+            best = searchPool == null || to - from < parallelThreshold
+                    ? scan.scan(from, to)
+                    : searchPool.invoke(new TopScanTask(scan, from, to, Math.max(1, (to - from) / (searchPool.getParallelism() * 4))));
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<RecipeSearchCursor> top = new ArrayList<>(best);
+        top.sort(order);
+        return top;
+    }
+
+    /**
+     * Scans of the calorie-sorted slots for one search.
+     */
+    private class TopScan {
+        private final BitSet matching;
+        private final boolean gaining;
+        private final RecipeSearchCursor after;
+        private final int count;
+        private final ToLongFunction<Long> likes;
+        private final Comparator<RecipeSearchCursor> order;
+
+        TopScan(BitSet matching, boolean gaining, RecipeSearchCursor after, int count,
+                ToLongFunction<Long> likes, Comparator<RecipeSearchCursor> order) {
+            this.matching = matching;
+            this.gaining = gaining;
+            this.after = after;
+            this.count = count;
+            this.likes = likes;
+            this.order = order;
+        }
+
+        /**
+         * Returns the best matching recipes among the slots between the two positions of the calorie order,
+         * worst first.
+         */
+        PriorityQueue<RecipeSearchCursor> scan(int from, int to) {
+            // Worst kept recipe first, to be evicted by a better one
+            PriorityQueue<RecipeSearchCursor> best = new PriorityQueue<>(count + 1, order.reversed());
+            for (int i = 0; i < to - from; i++) {
+                int slot = slotsByCalories[gaining ? to - 1 - i : from + i];
+                if (!matching.get(slot)) {
+                    continue;
+                }
+                if (best.size() == count && (gaining ? calories[slot] < best.peek().calories()
+                        : calories[slot] > best.peek().calories())) {
+                    break;
+                }
+                RecipeSearchCursor candidate = new RecipeSearchCursor(calories[slot], totalTimes[slot],
+                        likes.applyAsLong(recipeIds[slot]), recipeIds[slot]);
+                if (after != null && order.compare(candidate, after) <= 0) {
+                    continue;
+                }
+                best.offer(candidate);
+                if (best.size() > count) {
+                    best.poll();
+                }
+            }
+            return best;
+        }
+
+        PriorityQueue<RecipeSearchCursor> merge(PriorityQueue<RecipeSearchCursor> first, PriorityQueue<RecipeSearchCursor> second) {
+            for (RecipeSearchCursor candidate : second) {
+                first.offer(candidate);
+                if (first.size() > count) {
+                    first.poll();
+                }
+            }
+            return first;
+        }
+    }
+
+    /**
+     * Splits a range of the calorie order in halves down to partitions of {@code partitionSize} slots.
+     */
+    private static class TopScanTask extends RecursiveTask<PriorityQueue<RecipeSearchCursor>> {
+        private static final long serialVersionUID = 1L;
+
+        private final TopScan scan;
+        private final int from;
+        private final int to;
+        private final int partitionSize;
+
+        TopScanTask(TopScan scan, int from, int to, int partitionSize) {
+            this.scan = scan;
+            this.from = from;
+            this.to = to;
+            this.partitionSize = partitionSize;
+        }
+
+        @Override
+        protected PriorityQueue<RecipeSearchCursor> compute() {
+            if (to - from <= partitionSize) {
+                return scan.scan(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            TopScanTask second = new TopScanTask(scan, middle, to, partitionSize);
+            second.fork();
+            PriorityQueue<RecipeSearchCursor> first = new TopScanTask(scan, from, middle, partitionSize).compute();
+            return scan.merge(first, second.join());
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsByRecipe.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Slots of the recipes matching every filter, the name being matched by the given recipe IDs if not null.
+     */
+    private BitSet matchingSlots(RecipeSearchRequest request, Collection<Long> named) {
+        BitSet result = (BitSet) occupied.clone();
+        if (named != null) {
+            BitSet withName = new BitSet();
+            for (Long recipeId : named) {
+                Integer slot = slotsByRecipe.get(recipeId);
+                if (slot != null) {
+                    withName.set(slot);
+                }
+            }
+            result.and(withName);
+        }
+        if (request.getDietaryPreferences() != null) {
+            request.getDietaryPreferences().forEach(preference -> result.and(bits(byDietaryPreference, preference)));
+        }
+        if (request.getConditionSuitability() != null) {
+            request.getConditionSuitability().forEach(suitability -> result.and(bits(byHealthConditionSuitability, suitability)));
+        }
+        if (request.getAllergens() != null) {
+            request.getAllergens().forEach(allergen -> result.andNot(bits(byAllergen, allergen)));
+        }
+        if (request.getRecipeTypes() != null && !request.getRecipeTypes().isEmpty()) {
+            BitSet anyType = new BitSet();
+            request.getRecipeTypes().forEach(type -> anyType.or(bits(byRecipeType, type)));
+            result.and(anyType);
+        }
+        if (request.getIngredientMatch() == IngredientMatch.ONLY) {
+            Set<Long> foodItemIds = new HashSet<>();
+            boolean searched = false;
+            if (request.getIngredientNames() != null && !request.getIngredientNames().isEmpty()) {
+                request.getIngredientNames().forEach(ingredientName ->
+                        foodItemIds.addAll(foodItemsByName.getOrDefault(ingredientName.toLowerCase(), Set.of())));
+                searched = true;
+            }
+            if (request.getFoodItemIds() != null && !request.getFoodItemIds().isEmpty()) {
+                foodItemIds.addAll(request.getFoodItemIds());
+                searched = true;
+            }
+            if (searched) {
+                result.and(usingOnly(foodItemIds));
+            }
+        } else {
+            if (request.getIngredientNames() != null) {
+                for (String ingredientName : request.getIngredientNames()) {
+                    BitSet withIngredient = new BitSet();
+                    for (Long foodItemId : foodItemsByName.getOrDefault(ingredientName.toLowerCase(), Set.of())) {
+                        withIngredient.or(byFoodItem.get(foodItemId));
+                    }
+                    result.and(withIngredient);
+                }
+            }
+            if (request.getFoodItemIds() != null) {
+                request.getFoodItemIds().forEach(foodItemId -> result.and(byFoodItem.getOrDefault(foodItemId, new BitSet())));
+            }
+        }
+        if (request.getMinCalories() != null || request.getMaxCalories() != null) {
+            int from = request.getMinCalories() == null ? 0 : lowerBound(sortedCalories, request.getMinCalories());
+            int to = request.getMaxCalories() == null ? sortedCalories.length : upperBound(sortedCalories, request.getMaxCalories());
+            result.and(slots(slotsByCalories, from, to));
+        }
+        if (request.getMaxTotalTime() != null) {
+            result.and(slots(slotsByTotalTime, 0, upperBound(sortedTotalTimes, request.getMaxTotalTime())));
+        }
+
+        return result;
+    }
+
+    /**
+     * Slots of the recipes having ingredients, all of them among the given food items: the postings of the food
+     * items count, for each recipe, how many of its ingredients are given, which must be all of them.
+     */
+    private BitSet usingOnly(Set<Long> foodItemIds) {
+        BitSet using = new BitSet();
+        int[] given = new int[slotCount];
+        for (Long foodItemId : foodItemIds) {
+            BitSet recipes = byFoodItem.get(foodItemId);
+            if (recipes == null) {
+                continue;
+            }
+            using.or(recipes);
+            for (int slot = recipes.nextSetBit(0); slot >= 0; slot = recipes.nextSetBit(slot + 1)) {
+                given[slot]++;
+            }
+        }
+        for (int slot = using.nextSetBit(0); slot >= 0; slot = using.nextSetBit(slot + 1)) {
+            if (given[slot] < ingredientIds[slot].length) {
+                using.clear(slot);
+            }
+        }
+        return using;
+    }
+
+    private void index(Recipe recipe) {
+        int slot = freeSlots.isEmpty() ? slotCount++ : freeSlots.pop();
+        ensureCapacity(slot + 1);
+        slotsByRecipe.put(recipe.getId(), slot);
+        occupied.set(slot);
+        recipeIds[slot] = recipe.getId();
+        calories[slot] = recipe.getMacronutrients().getCalories();
+        totalTimes[slot] = recipe.getPreparationTime() + recipe.getCookingTime();
+
+        recipe.getDietaryPreferences().forEach(preference -> bitsForUpdate(byDietaryPreference, preference).set(slot));
+        recipe.getAllergens().forEach(allergen -> bitsForUpdate(byAllergen, allergen).set(slot));
+        recipe.getHealthConditionSuitabilities().forEach(suitability -> bitsForUpdate(byHealthConditionSuitability, suitability).set(slot));
+        recipe.getRecipeTypes().forEach(type -> bitsForUpdate(byRecipeType, type).set(slot));
+
+        Set<Long> foodItemIds = new HashSet<>();
+        for (RecipeIngredient ingredient : recipe.getIngredients()) {
+            FoodItem foodItem = ingredient.getFoodItem();
+            if (foodItem == null || foodItem.getId() == null) {
+                continue;
+            }
+            foodItemIds.add(foodItem.getId());
+            byFoodItem.computeIfAbsent(foodItem.getId(), id -> new BitSet()).set(slot);
+            // A food item only referenced by ID keeps the name it was indexed with
+            if (foodItem.getName() != null) {
+                nameFoodItem(foodItem.getId(), foodItem.getName());
+            }
+        }
+        ingredientIds[slot] = foodItemIds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private boolean unindex(Long recipeId) {
+        Integer slot = slotsByRecipe.remove(recipeId);
+        if (slot == null) {
+            return false;
+        }
+        occupied.clear(slot);
+        byDietaryPreference.values().forEach(bits -> bits.clear(slot));
+        byAllergen.values().forEach(bits -> bits.clear(slot));
+        byHealthConditionSuitability.values().forEach(bits -> bits.clear(slot));
+        byRecipeType.values().forEach(bits -> bits.clear(slot));
+        for (long foodItemId : ingredientIds[slot]) {
+            BitSet recipes = byFoodItem.get(foodItemId);
+            if (recipes != null) {
+                recipes.clear(slot);
+            }
+        }
+        ingredientIds[slot] = null;
+        freeSlots.push(slot);
+        return true;
+    }
+
+    private void nameFoodItem(Long foodItemId, String name) {
+        String previous = name == null ? foodItemNames.remove(foodItemId) : foodItemNames.put(foodItemId, name);
+        if (previous != null && (name == null || !previous.equalsIgnoreCase(name))) {
+            Set<Long> sameName = foodItemsByName.get(previous.toLowerCase());
+            sameName.remove(foodItemId);
+            if (sameName.isEmpty()) {
+                foodItemsByName.remove(previous.toLowerCase());
+            }
+        }
+        if (name != null) {
+            foodItemsByName.computeIfAbsent(name.toLowerCase(), key -> new HashSet<>()).add(foodItemId);
+        }
+    }
+
+    /**
+     * Sorts the slots if a change made them stale. Must be called with the read lock held, which it may release
+     * and take again.
+     */
+    private void ensureSorted() {
+        if (sortedArraysStale) {
+            // Sorting needs the write lock, which cannot be taken while holding the read lock
+            lock.readLock().unlock();
+            lock.writeLock().lock();
+            try {
+                if (sortedArraysStale) {
+                    sortSlots();
+                }
+                lock.readLock().lock();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void sortSlots() {
+        Integer[] slots = occupied.stream().boxed().toArray(Integer[]::new);
+        Arrays.sort(slots, Comparator.comparingDouble(slot -> calories[slot]));
+        slotsByCalories = Arrays.stream(slots).mapToInt(Integer::intValue).toArray();
+        sortedCalories = new float[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            sortedCalories[i] = calories[slotsByCalories[i]];
+        }
+        Arrays.sort(slots, Comparator.comparingInt(slot -> totalTimes[slot]));
+        slotsByTotalTime = Arrays.stream(slots).mapToInt(Integer::intValue).toArray();
+        sortedTotalTimes = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            sortedTotalTimes[i] = totalTimes[slotsByTotalTime[i]];
+        }
+        sortedArraysStale = false;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= recipeIds.length) {
+            return;
+        }
+        int grown = Math.max(capacity, recipeIds.length * 2);
+        recipeIds = Arrays.copyOf(recipeIds, grown);
+        calories = Arrays.copyOf(calories, grown);
+        totalTimes = Arrays.copyOf(totalTimes, grown);
+        ingredientIds = Arrays.copyOf(ingredientIds, grown);
+    }
+
+    private static BitSet slots(int[] sortedSlots, int from, int to) {
+        BitSet bits = new BitSet();
+        for (int i = from; i < to; i++) {
+            bits.set(sortedSlots[i]);
+        }
+        return bits;
+    }
+
+    /**
+     * @return The index of the first value that is at least {@code min}.
+     */
+    private static int lowerBound(float[] values, float min) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < min) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return The index of the first value that is greater than {@code max}.
+     */
+    private static int upperBound(float[] values, float max) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= max) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int upperBound(int[] values, float max) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= max) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static <E extends Enum<E>> BitSet bits(Map<E, BitSet> index, E value) {
+        return index.getOrDefault(value, new BitSet());
+    }
+
+    private static <E extends Enum<E>> BitSet bitsForUpdate(Map<E, BitSet> index, E value) {
+        return index.computeIfAbsent(value, key -> new BitSet());
+    }
+}
@@ -0,0 +1,238 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.ItemPopularity;
+import fit.health.fithealthapi.model.Recipe;
+import fit.health.fithealthapi.model.RecipeIngredient;
+import fit.health.fithealthapi.model.RecipeTypeWrapper;
+import fit.health.fithealthapi.model.dto.RecipeSearchRequest;
+import fit.health.fithealthapi.model.enums.IngredientMatch;
+import fit.health.fithealthapi.model.enums.UserItemType;
+import fit.health.fithealthapi.utils.EnumMasks;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Runs a recipe search as a single query, so only the recipes of the requested page are read from the database.
+ * The tags are checked on their mask columns, ingredients and recipe types with {@code EXISTS} subqueries, the
+ * name by the IDs found by {@link NameSearchIndex}, and the page starts after a {@link RecipeSearchCursor} instead
+ * of at an offset, so the cost of a page does not grow with its position.
+ * <p>
+ * At most {@code recipes.search.max-named-ids} name matches are bound as parameters. Beyond that, such as for
+ * query words of one or two letters, the other filters are run alone a batch at a time and their results are
+ * kept if the name matched.
+ */
+@Component
+public class RecipeSearchQuery {
+
+    private final EntityManager entityManager;
+    private final boolean inMemory;
+    private final int maxLimit;
+    private final int maxNamedIds;
+
+    public RecipeSearchQuery(EntityManager entityManager,
+                             @Value("${recipes.search.source:database}") String source,
+                             @Value("${recipes.search.max-limit:100}") int maxLimit,
+                             @Value("${recipes.search.max-named-ids:1000}") int maxNamedIds) {
+        this.entityManager = entityManager;
+        this.inMemory = "index".equalsIgnoreCase(source);
+        this.maxLimit = maxLimit;
+        this.maxNamedIds = maxNamedIds;
+    }
+
+    /**
+     * Whether searches are answered from {@link RecipeSearchIndex} instead of this query.
+     */
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    /**
+     * The number of recipes a page holds: the requested limit, 10 if none, at most {@code recipes.search.max-limit}.
+     */
+    public int pageSize(Integer limit) {
+        return limit == null ? Math.min(10, maxLimit) : Math.max(1, Math.min(limit, maxLimit));
+    }
+
+    /**
+     * Returns the cursors of up to {@code count} recipes matching the request, in the order of
+     * {@link RecipeSearchCursor}, starting after {@code after} if not null. Only the columns of the cursor are read,
+     * the recipes are then loaded with their details in one query.
+     *
+     * @param named The IDs of the recipes matching the request's name, null to ignore the name.
+     */
+    public List<RecipeSearchCursor> find(RecipeSearchRequest request, Collection<Long> named, boolean gaining,
+                                         RecipeSearchCursor after, int count) {
+        if (named != null && named.isEmpty()) {
+            return List.of();
+        }
+        if (named != null && named.size() > maxNamedIds) {
+            return findAmong(request, named instanceof Set<Long> set ? set : new HashSet<>(named), gaining, after, count);
+        }
+        return query(request, named, gaining, after, count);
+    }
+
+    /**
+     * Reads the recipes matching the other filters in order, {@code recipes.search.max-named-ids} at a time, and
+     * keeps the named ones until {@code count} are found. Names matching that many recipes are common, so most of
+     * the recipes read are kept.
+     */
+    private List<RecipeSearchCursor> findAmong(RecipeSearchRequest request, Set<Long> named, boolean gaining,
+                                               RecipeSearchCursor after, int count) {
+        int batchSize = Math.max(count, maxNamedIds);
+        List<RecipeSearchCursor> found = new ArrayList<>();
+        List<RecipeSearchCursor> batch;
+        do {
+            batch = query(request, null, gaining, after, batchSize);
+            for (RecipeSearchCursor cursor : batch) {
+                if (named.contains(cursor.id())) {
+                    found.add(cursor);
+                    if (found.size() == count) {
+                        return found;
+                    }
+                }
+            }
+            after = batch.isEmpty() ? after : batch.get(batch.size() - 1);
+        } while (batch.size() == batchSize);
+        return found;
+    }
+
+    private List<RecipeSearchCursor> query(RecipeSearchRequest request, Collection<Long> named, boolean gaining,
+                                           RecipeSearchCursor after, int count) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Recipe> recipe = query.from(Recipe.class);
+        Join<Object, Object> macronutrients = recipe.join("macronutrients");
+        Expression<Float> calories = macronutrients.get("calories");
+        Expression<Integer> totalTime = cb.sum(recipe.<Integer>get("preparationTime"), recipe.get("cookingTime"));
+        Expression<Long> likes = likes(cb, query, recipe);
+
+        List<Predicate> predicates = filters(cb, query, recipe, calories, totalTime, request);
+        if (named != null) {
+            predicates.add(recipe.get("id").in(named));
+        }
+        if (after != null) {
+            predicates.add(after(cb, gaining, after, calories, totalTime, likes, recipe.get("id")));
+        }
+        query.multiselect(recipe.get("id"), calories, totalTime, likes)
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(gaining ? cb.desc(calories) : cb.asc(calories), cb.asc(totalTime), cb.desc(likes),
+                        cb.asc(recipe.get("id")));
+
+        return entityManager.createQuery(query).setMaxResults(count).getResultList().stream()
+                .map(row -> new RecipeSearchCursor(row.get(1, Float.class), row.get(2, Integer.class),
+                        row.get(3, Long.class), row.get(0, Long.class)))
+                .toList();
+    }
+
+    private static List<Predicate> filters(CriteriaBuilder cb, CriteriaQuery<?> query, Root<Recipe> recipe,
+                                           Expression<Float> calories, Expression<Integer> totalTime,
+                                           RecipeSearchRequest request) {
+        List<Predicate> predicates = new ArrayList<>();
+        long preferences = EnumMasks.toMask(request.getDietaryPreferences());
+        if (preferences != 0) {
+            predicates.add(cb.equal(bitAnd(cb, recipe.get("dietaryPreferences"), preferences), preferences));
+        }
+        long suitabilities = EnumMasks.toMask(request.getConditionSuitability());
+        if (suitabilities != 0) {
+            predicates.add(cb.equal(bitAnd(cb, recipe.get("healthConditionSuitabilities"), suitabilities), suitabilities));
+        }
+        long allergens = EnumMasks.toMask(request.getAllergens());
+        if (allergens != 0) {
+            predicates.add(cb.equal(bitAnd(cb, recipe.get("allergens"), allergens), 0L));
+        }
+        if (request.getRecipeTypes() != null && !request.getRecipeTypes().isEmpty()) {
+            Subquery<Long> withType = query.subquery(Long.class);
+            Root<RecipeTypeWrapper> wrapper = withType.from(RecipeTypeWrapper.class);
+            withType.select(wrapper.get("id"))
+                    .where(cb.equal(wrapper.get("recipe"), recipe), wrapper.get("type").in(request.getRecipeTypes()));
+            predicates.add(cb.exists(withType));
+        }
+        List<String> ingredientNames = request.getIngredientNames() == null ? List.of()
+                : request.getIngredientNames().stream().map(String::toLowerCase).toList();
+        List<Long> foodItemIds = request.getFoodItemIds() == null ? List.of() : request.getFoodItemIds();
+        if (request.getIngredientMatch() == IngredientMatch.ONLY) {
+            if (!ingredientNames.isEmpty() || !foodItemIds.isEmpty()) {
+                // Some ingredient, and none that is not searched
+                predicates.add(cb.exists(ingredient(cb, query, recipe, null)));
+                predicates.add(cb.not(cb.exists(ingredient(cb, query, recipe, foodItem -> {
+                    List<Predicate> searched = new ArrayList<>();
+                    if (!ingredientNames.isEmpty()) {
+                        searched.add(cb.lower(foodItem.get("name")).in(ingredientNames));
+                    }
+                    if (!foodItemIds.isEmpty()) {
+                        searched.add(foodItem.get("id").in(foodItemIds));
+                    }
+                    return cb.not(cb.or(searched.toArray(Predicate[]::new)));
+                }))));
+            }
+        } else {
+            for (String ingredientName : ingredientNames) {
+                predicates.add(cb.exists(ingredient(cb, query, recipe,
+                        foodItem -> cb.equal(cb.lower(foodItem.get("name")), ingredientName))));
+            }
+            for (Long foodItemId : foodItemIds) {
+                predicates.add(cb.exists(ingredient(cb, query, recipe,
+                        foodItem -> cb.equal(foodItem.get("id"), foodItemId))));
+            }
+        }
+        if (request.getMinCalories() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(calories, request.getMinCalories()));
+        }
+        if (request.getMaxCalories() != null) {
+            predicates.add(cb.lessThanOrEqualTo(calories, request.getMaxCalories()));
+        }
+        if (request.getMaxTotalTime() != null) {
+            // The total time is a whole number of minutes, compared like the in-memory search compares it
+            predicates.add(cb.lessThanOrEqualTo(totalTime, (int) Math.floor(request.getMaxTotalTime())));
+        }
+        return predicates;
+    }
+
+    /**
+     * Selects the ingredients of the recipe whose food item matches the condition, all of them if null.
+     */
+    private static Subquery<Long> ingredient(CriteriaBuilder cb, CriteriaQuery<?> query, Root<Recipe> recipe,
+                                             Function<Path<Object>, Predicate> foodItemCondition) {
+        Subquery<Long> ingredients = query.subquery(Long.class);
+        Root<RecipeIngredient> ingredient = ingredients.from(RecipeIngredient.class);
+        Predicate ofRecipe = cb.equal(ingredient.get("recipe"), recipe);
+        ingredients.select(ingredient.get("id")).where(foodItemCondition == null ? ofRecipe
+                : cb.and(ofRecipe, foodItemCondition.apply(ingredient.get("foodItem"))));
+        return ingredients;
+    }
+
+    private static Expression<Long> likes(CriteriaBuilder cb, CriteriaQuery<?> query, Root<Recipe> recipe) {
+        Subquery<Long> likes = query.subquery(Long.class);
+        Root<ItemPopularity> popularity = likes.from(ItemPopularity.class);
+        likes.select(popularity.get("likes"))
+                .where(cb.equal(popularity.get("itemType"), UserItemType.RECIPE),
+                        cb.equal(popularity.get("itemId"), recipe.get("id")));
+        return cb.coalesce(likes, 0L);
+    }
+
+    /**
+     * Matches the recipes ordered after the cursor.
+     */
+    private static Predicate after(CriteriaBuilder cb, boolean gaining, RecipeSearchCursor cursor,
+                                   Expression<Float> calories, Expression<Integer> totalTime, Expression<Long> likes,
+                                   Expression<Long> id) {
+        Predicate sameCalories = cb.equal(calories, cursor.calories());
+        Predicate sameTime = cb.equal(totalTime, cursor.totalTime());
+        Predicate sameLikes = cb.equal(likes, cursor.likes());
+        return cb.or(
+                gaining ? cb.lessThan(calories, cursor.calories()) : cb.greaterThan(calories, cursor.calories()),
+                cb.and(sameCalories, cb.greaterThan(totalTime, cursor.totalTime())),
+                cb.and(sameCalories, sameTime, cb.lessThan(likes, cursor.likes())),
+                cb.and(sameCalories, sameTime, sameLikes, cb.greaterThan(id, cursor.id())));
+    }
+
+    private static Expression<Long> bitAnd(CriteriaBuilder cb, Path<?> maskColumn, long mask) {
+        return cb.function("bitand", Long.class, maskColumn, cb.literal(mask));
+    }
+}
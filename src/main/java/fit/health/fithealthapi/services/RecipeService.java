@@ -5,33 +5,69 @@ import fit.health.fithealthapi.model.FoodItem;
 import fit.health.fithealthapi.model.Macronutrients;
 import fit.health.fithealthapi.model.Recipe;
 import fit.health.fithealthapi.model.RecipeIngredient;
+import fit.health.fithealthapi.model.User;
+import fit.health.fithealthapi.model.dto.BulkImportError;
+import fit.health.fithealthapi.model.dto.BulkImportResult;
 import fit.health.fithealthapi.model.dto.InferredPreferences;
+import fit.health.fithealthapi.model.dto.NameSuggestion;
+import fit.health.fithealthapi.model.dto.RecipeSearchPage;
 import fit.health.fithealthapi.model.dto.RecipeSearchRequest;
+import fit.health.fithealthapi.model.dto.RecipeSummary;
 import fit.health.fithealthapi.model.enums.*;
 import fit.health.fithealthapi.repository.RecipeRepository;
-import fit.health.fithealthapi.repository.UserPreferenceRepository;
+import fit.health.fithealthapi.utils.TransactionUtils;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.*;
-import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 @Service
-@AllArgsConstructor
 public class RecipeService {
 
+    private static final Logger LOGGER = Logger.getLogger(RecipeService.class.getName());
+
     private final RecipeRepository recipeRepository;
     private final FoodItemService foodItemService;
     private final OntologyService ontologyService;
     private final SharedService sharedService;
     private final EntityManager entityManager;
-    private final UserPreferenceRepository userPreferenceRepository;
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final RecipeSearchQuery recipeSearchQuery;
+    private final ItemPopularityCounter itemPopularityCounter;
+    private final NameSearchIndex nameSearchIndex;
+    private final NutritionRecomputer nutritionRecomputer;
+    private final NameSuggester nameSuggester;
+    // Recipes saved per transaction by a bulk import
+    private final int bulkBatchSize;
+
+    public RecipeService(RecipeRepository recipeRepository, FoodItemService foodItemService, OntologyService ontologyService,
+                         SharedService sharedService, EntityManager entityManager, RecipeSearchIndex recipeSearchIndex,
+                         RecipeSearchQuery recipeSearchQuery, ItemPopularityCounter itemPopularityCounter,
+                         NameSearchIndex nameSearchIndex, NutritionRecomputer nutritionRecomputer,
+                         NameSuggester nameSuggester,
+                         @Value("${recipes.bulk.batch-size:500}") int bulkBatchSize) {
+        this.recipeRepository = recipeRepository;
+        this.foodItemService = foodItemService;
+        this.ontologyService = ontologyService;
+        this.sharedService = sharedService;
+        this.entityManager = entityManager;
+        this.recipeSearchIndex = recipeSearchIndex;
+        this.recipeSearchQuery = recipeSearchQuery;
+        this.itemPopularityCounter = itemPopularityCounter;
+        this.nameSearchIndex = nameSearchIndex;
+        this.nutritionRecomputer = nutritionRecomputer;
+        this.nameSuggester = nameSuggester;
+        this.bulkBatchSize = bulkBatchSize;
+    }
 
     // ===================== Recipe CRUD Operations =====================
 
@@ -43,11 +79,112 @@ public class RecipeService {
             item.setFoodItem(foodItemService.findById(item.getFoodItem().getId()));
         }
         calculateNutritionalValues(recipe);
-        addRecipeToOntology(recipe);
+        try (OntologyChangeSet changeSet = ontologyService.beginChangeSet()) {
+            addRecipeToOntology(recipe);
+            changeSet.commit();
+        }
         inferPreferences(recipe);
         inferAllergens(recipe);
         recipe.checkAndUpdateVerification();
-        return recipeRepository.save(recipe);
+        Recipe saved = recipeRepository.save(recipe);
+        TransactionUtils.afterCommit(() -> {
+            recipeSearchIndex.put(saved);
+            indexName(saved);
+        });
+        return saved;
+    }
+
+    /**
+     * Create many recipes at once. The ingredients of all recipes are loaded in a single query, every
+     * valid recipe is added to the ontology in one change set and classified in one batch, then the
+     * recipes are saved with their ingredients and types in chunks, each chunk in its own transaction.
+     * Invalid recipes, and the recipes of a chunk that failed to save, are reported instead of failing
+     * the whole import.
+     * @param recipes The recipes to create, numbered by their position.
+     * @param owner The user the recipes belong to.
+     * @return What was created and what was rejected.
+     */
+    public BulkImportResult saveRecipes(List<Recipe> recipes, User owner) {
+        BulkImportResult result = new BulkImportResult();
+        result.setReceived(recipes.size());
+
+        Set<Long> foodItemIds = recipes.stream()
+                .filter(recipe -> recipe != null && recipe.getIngredients() != null)
+                .flatMap(recipe -> recipe.getIngredients().stream())
+                .filter(Objects::nonNull)
+                .map(RecipeIngredient::getFoodItem)
+                .filter(foodItem -> foodItem != null && foodItem.getId() != null)
+                .map(FoodItem::getId)
+                .collect(Collectors.toSet());
+        Map<Long, FoodItem> foodItems = foodItemService.findAllById(foodItemIds);
+
+        Map<Integer, Recipe> valid = new LinkedHashMap<>();
+        for (int row = 0; row < recipes.size(); row++) {
+            Recipe recipe = recipes.get(row);
+            String error = validate(recipe, foodItems);
+            if (error != null) {
+                result.addError(row, recipe != null ? recipe.getName() : null, error);
+            } else {
+                valid.put(row, recipe);
+            }
+        }
+        if (valid.isEmpty()) {
+            return result;
+        }
+
+        String timestamp = new SimpleDateFormat("yyyyHHmmss").format(new java.util.Date());
+        valid.forEach((row, recipe) -> {
+            recipe.setOntologyLinkedName(sharedService.convertToOntoCase(recipe.getName() + timestamp + "_" + row));
+            recipe.setOwner(owner);
+            for (RecipeIngredient ingredient : recipe.getIngredients()) {
+                ingredient.setFoodItem(foodItems.get(ingredient.getFoodItem().getId()));
+            }
+            calculateNutritionalValues(recipe);
+        });
+        try (OntologyChangeSet changeSet = ontologyService.beginChangeSet()) {
+            valid.values().forEach(this::addRecipeToOntology);
+            changeSet.commit();
+        }
+        Map<String, InferredPreferences> inferred = ontologyService.inferPreferences(
+                valid.values().stream().map(Recipe::getOntologyLinkedName).toList());
+        for (Recipe recipe : valid.values()) {
+            InferredPreferences inferredPreferences = inferred.get(recipe.getOntologyLinkedName());
+            recipe.setDietaryPreferences(inferredPreferences.getDietaryPreferences());
+            recipe.setHealthConditionSuitabilities(inferredPreferences.getHealthConditionSuitabilities());
+            inferAllergens(recipe);
+            recipe.checkAndUpdateVerification();
+        }
+
+        List<Map.Entry<Integer, Recipe>> rows = new ArrayList<>(valid.entrySet());
+        List<String> unsaved = new ArrayList<>();
+        for (int start = 0; start < rows.size(); start += bulkBatchSize) {
+            List<Map.Entry<Integer, Recipe>> chunk = rows.subList(start, Math.min(start + bulkBatchSize, rows.size()));
+            try {
+                recipeRepository.saveAll(chunk.stream().map(Map.Entry::getValue).toList());
+                chunk.forEach(row -> {
+                    result.addCreated(row.getValue().getId());
+                    recipeSearchIndex.put(row.getValue());
+                    indexName(row.getValue());
+                });
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to save recipes " + chunk.get(0).getKey() + " to "
+                        + chunk.get(chunk.size() - 1).getKey(), e);
+                chunk.forEach(row -> {
+                    result.addError(row.getKey(), row.getValue().getName(), "Failed to save: " + e.getMessage());
+                    unsaved.add(row.getValue().getOntologyLinkedName());
+                });
+            }
+        }
+        // The classes of the chunks that failed to save would otherwise stay in the ontology, and be added again
+        // under another name when the recipes are imported again
+        if (!unsaved.isEmpty()) {
+            try (OntologyChangeSet changeSet = ontologyService.beginChangeSet()) {
+                unsaved.forEach(ontologyService::deleteItem);
+                changeSet.commit();
+            }
+        }
+        result.getErrors().sort(Comparator.comparingInt(BulkImportError::getRow));
+        return result;
     }
 
     @Transactional
@@ -56,16 +193,24 @@ public class RecipeService {
                 .orElseThrow(() -> new EntityNotFoundException("Recipe not found"));
 
         if(!areOntoFieldsEqual(updatedRecipe, existingRecipe)){
-            ontologyService.removeDefinedClass(sharedService.convertToOntoCase(updatedRecipe.getOntologyLinkedName()));
-            ontologyService.removeObjectPropertyRestrictions(updatedRecipe.getOntologyLinkedName());
-
             calculateNutritionalValues(updatedRecipe);
-            addRecipeToOntology(updatedRecipe);
+            try (OntologyChangeSet changeSet = ontologyService.beginChangeSet()) {
+                ontologyService.removeDefinedClass(sharedService.convertToOntoCase(updatedRecipe.getOntologyLinkedName()));
+                ontologyService.removeObjectPropertyRestrictions(updatedRecipe.getOntologyLinkedName());
+                addRecipeToOntology(updatedRecipe);
+                changeSet.commit();
+            }
             inferPreferences(updatedRecipe);
         }
         inferAllergens(updatedRecipe);
         updateRecipeFields(existingRecipe, updatedRecipe);
-        return recipeRepository.save(existingRecipe);
+        Recipe saved = recipeRepository.save(existingRecipe);
+        TransactionUtils.afterCommit(() -> {
+            recipeSearchIndex.put(saved);
+            indexName(saved);
+            nutritionRecomputer.componentsChanged(List.of(saved.getId()));
+        });
+        return saved;
     }
 
     @Transactional(readOnly = true)
@@ -81,6 +226,11 @@ public class RecipeService {
 
         ontologyService.deleteItem(sharedService.convertToOntoCase(recipe.getOntologyLinkedName()));
         recipeRepository.delete(recipe);
+        TransactionUtils.afterCommit(() -> {
+            recipeSearchIndex.remove(id);
+            nameSearchIndex.remove(NameSearchIndex.Kind.RECIPE, id);
+            nameSuggester.remove(UserItemType.RECIPE, id);
+        });
     }
 
     public List<Recipe> getAllRecipes(){
@@ -89,6 +239,11 @@ public class RecipeService {
 
     // ===================== Helper Methods =====================
 
+    private void indexName(Recipe recipe) {
+        nameSearchIndex.put(NameSearchIndex.Kind.RECIPE, recipe.getId(), recipe.getName());
+        nameSuggester.put(UserItemType.RECIPE, recipe.getId(), recipe.getName());
+    }
+
     private void calculateNutritionalValues(Recipe recipe) {
         float totalCalories = 0, totalFat = 0, totalProtein = 0, totalSalt = 0, totalSugar = 0, totalWeight = 0;
 
@@ -109,7 +264,7 @@ public class RecipeService {
         macronutrients.setFat(totalFat);
         macronutrients.setProtein(totalProtein);
         macronutrients.setSalt(totalSalt);
-        macronutrients.setSalt(totalSugar);
+        macronutrients.setSugar(totalSugar);
         recipe.setMacronutrients(macronutrients);
 
         recipe.setTotalWeight(totalWeight);
@@ -133,12 +288,45 @@ public class RecipeService {
         recipe.setAllergens(allergens);
     }
 
+    private String validate(Recipe recipe, Map<Long, FoodItem> foodItems) {
+        if (recipe == null) {
+            return "Row is empty";
+        }
+        if (recipe.getName() == null || recipe.getName().isBlank()) {
+            return "Name is required";
+        }
+        if (recipe.getPreparationTime() == null || recipe.getPreparationTime() < 0
+                || recipe.getCookingTime() == null || recipe.getCookingTime() < 0) {
+            return "Preparation and cooking time are required";
+        }
+        if (recipe.getServingSize() == null || recipe.getServingSize() <= 0) {
+            return "Serving size is required";
+        }
+        if (recipe.getIngredients() == null) {
+            return "Ingredients are required";
+        }
+        for (RecipeIngredient ingredient : recipe.getIngredients()) {
+            if (ingredient == null) {
+                return "Ingredient is empty";
+            }
+            if (ingredient.getFoodItem() == null || ingredient.getFoodItem().getId() == null) {
+                return "Ingredient without a food item";
+            }
+            if (!foodItems.containsKey(ingredient.getFoodItem().getId())) {
+                return "Food item not found with ID: " + ingredient.getFoodItem().getId();
+            }
+            if (ingredient.getQuantity() == null || ingredient.getQuantity() < 0 || ingredient.getUnit() == null) {
+                return "Invalid quantity of food item " + ingredient.getFoodItem().getId();
+            }
+        }
+        return null;
+    }
+
     private void addRecipeToOntology(Recipe recipe) {
         ontologyService.createItemType(recipe.getOntologyLinkedName(), "Recipe");
         addRecipeDataProperties(recipe, recipe.getOntologyLinkedName());
         addIngredientsToOntology(recipe, recipe.getOntologyLinkedName());
 
-        ontologyService.saveOntology();
         ontologyService.convertToDefinedClass(recipe.getOntologyLinkedName());
     }
 
@@ -217,52 +405,139 @@ public class RecipeService {
 
     // ===================== Recipe Search Methods =====================
 
-    public List<Recipe> searchRecipes(RecipeSearchRequest searchRequest) {
-        List<Recipe> recipeList = recipeRepository.findAll();
-
-        return recipeList.stream()
-                .filter(recipe -> matchesDietaryPreferences(recipe, searchRequest.getDietaryPreferences()))
-                .filter(recipe -> excludesAllergens(recipe, searchRequest.getAllergens()))
-                .filter(recipe -> matchesHealthConditions(recipe, searchRequest.getConditionSuitability()))
-                .filter(recipe -> containsIngredients(recipe, searchRequest.getIngredientNames()))
-                .filter(recipe -> withinCalorieRange(recipe, searchRequest.getMinCalories(), searchRequest.getMaxCalories()))
-                .filter(recipe -> withinTime(recipe, searchRequest.getMaxTotalTime()))
-                .filter(recipe -> matchesName(recipe, searchRequest.getName()))
-                .filter(recipe -> matchesRecipeTypes(recipe, searchRequest.getRecipeTypes()))
-                .sorted(getRecipeComparator(searchRequest.getGoal()))
-                .collect(Collectors.toList());
+    /**
+     * Returns a page of the recipes matching the request, of at most {@code limit} recipes, starting after the
+     * request's cursor. The name is looked up in the {@link NameSearchIndex}; unless {@code recipes.search.source}
+     * is {@code index}, the other filters, ordering and paging are done by the database.
+     */
+    public RecipeSearchPage searchRecipes(RecipeSearchRequest searchRequest) {
+        boolean gaining = searchRequest.getGoal() == Goal.GAIN_SLOW || searchRequest.getGoal() == Goal.GAIN_FAST;
+        RecipeSearchCursor after = searchRequest.getCursor() == null ? null : RecipeSearchCursor.decode(searchRequest.getCursor());
+        int pageSize = recipeSearchQuery.pageSize(searchRequest.getLimit());
+        Set<Long> named = searchRequest.getName() == null || searchRequest.getName().isBlank() ? null
+                : searchNames(searchRequest.getName());
+
+        // One more than the page, to tell whether there is a next page
+        List<RecipeSearchCursor> found = findMatching(searchRequest, named, gaining, after, pageSize + 1);
+
+        String nextCursor = null;
+        if (found.size() > pageSize) {
+            found = found.subList(0, pageSize);
+            nextCursor = found.get(pageSize - 1).encode();
+        }
+        // Skips a recipe deleted since the search
+        return new RecipeSearchPage(findSummaries(found.stream().map(RecipeSearchCursor::id).toList()), nextCursor);
+    }
 
+    /**
+     * Returns the IDs of every recipe matching the request, in the order of {@link #searchRecipes}. They are read
+     * {@code recipes.search.max-limit} at a time without their summaries; the limit and cursor of the request are
+     * ignored.
+     */
+    public List<Long> searchRecipeIds(RecipeSearchRequest searchRequest) {
+        boolean gaining = searchRequest.getGoal() == Goal.GAIN_SLOW || searchRequest.getGoal() == Goal.GAIN_FAST;
+        int pageSize = recipeSearchQuery.pageSize(Integer.MAX_VALUE);
+        Set<Long> named = searchRequest.getName() == null || searchRequest.getName().isBlank() ? null
+                : searchNames(searchRequest.getName());
+
+        List<Long> ids = new ArrayList<>();
+        RecipeSearchCursor after = null;
+        List<RecipeSearchCursor> found;
+        do {
+            found = findMatching(searchRequest, named, gaining, after, pageSize);
+            found.forEach(cursor -> ids.add(cursor.id()));
+            after = found.isEmpty() ? null : found.get(found.size() - 1);
+        } while (found.size() == pageSize);
+        return ids;
     }
 
-    private Comparator<Recipe> getRecipeComparator(Goal goal) {
-        Comparator<Recipe> calorieComparator;
+    /**
+     * Returns the cursors of up to {@code count} recipes matching the request after {@code after}, from the
+     * in-memory index or the database depending on {@code recipes.search.source}.
+     */
+    private List<RecipeSearchCursor> findMatching(RecipeSearchRequest searchRequest, Set<Long> named, boolean gaining,
+                                                  RecipeSearchCursor after, int count) {
+        if (recipeSearchQuery.isInMemory()) {
+            ensureSearchIndexLoaded();
+            return recipeSearchIndex.searchTop(searchRequest, named, gaining, after, count,
+                    recipeId -> itemPopularityCounter.getLikes(UserItemType.RECIPE, recipeId));
+        }
+        return recipeSearchQuery.find(searchRequest, named, gaining, after, count);
+    }
+
+    /**
+     * Returns the IDs of the recipes whose name matches the query, closest first.
+     */
+    private Set<Long> searchNames(String query) {
+        nameSearchIndex.ensureLoaded(NameSearchIndex.Kind.RECIPE,
+                () -> NameSearchIndex.names(recipeRepository.findAllIdsAndNames()));
+        return nameSearchIndex.search(NameSearchIndex.Kind.RECIPE, query);
+    }
+
+    /**
+     * Reads the summaries of the recipes in one query, in the order of the IDs, leaving out missing ones.
+     */
+    private List<RecipeSummary> findSummaries(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // One summary per recipe type, merged into one with all the types
+        Map<Long, RecipeSummary> summaries = new HashMap<>();
+        for (RecipeSummary row : recipeRepository.findSummariesByIdIn(ids)) {
+            summaries.merge(row.getId(), row, (summary, other) -> {
+                summary.setRecipeTypesMask(summary.getRecipeTypesMask() | other.getRecipeTypesMask());
+                return summary;
+            });
+        }
+        summaries.values().forEach(summary ->
+                summary.setLikes(itemPopularityCounter.getLikes(UserItemType.RECIPE, summary.getId())));
+        return ids.stream().map(summaries::get).filter(Objects::nonNull).collect(Collectors.toCollection(ArrayList::new));
+    }
 
-        if (goal == Goal.GAIN_SLOW || goal == Goal.GAIN_FAST) {
-            calorieComparator = Comparator.comparing(
-                    (Recipe recipe) -> recipe.getMacronutrients().getCalories(), // Explicitly declare type
-                    Comparator.nullsLast(Float::compare)
-            ).reversed();
-        } else {
-            calorieComparator = Comparator.comparing(
-                    (Recipe recipe) -> recipe.getMacronutrients().getCalories(),
-                    Comparator.nullsLast(Float::compare)
-            );
+    /**
+     * Loads the recipes with their details in one query, in the order of the IDs, leaving out missing ones.
+     */
+    private List<Recipe> findAllWithDetails(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
         }
+        Map<Long, Recipe> recipes = recipeRepository.findAllWithDetailsByIdIn(ids).stream()
+                .collect(Collectors.toMap(Recipe::getId, recipe -> recipe, (first, second) -> first));
+        return ids.stream().map(recipes::get).filter(Objects::nonNull).collect(Collectors.toCollection(ArrayList::new));
+    }
 
-        return calorieComparator
-                .thenComparing((r -> r.getPreparationTime() + r.getCookingTime()), Comparator.nullsLast(Integer::compare))
-                .thenComparing(recipe -> getFavoriteCount(recipe.getId()), Comparator.reverseOrder());
+    private void ensureSearchIndexLoaded() {
+        if (recipeSearchIndex.isLoaded()) {
+            return;
+        }
+        synchronized (recipeSearchIndex) {
+            if (!recipeSearchIndex.isLoaded()) {
+                recipeSearchIndex.load(recipeRepository.findAllWithIngredients());
+            }
+        }
     }
 
+    /**
+     * Suggests the most liked recipes with a word of their name starting with the given text.
+     */
+    public List<NameSuggestion> suggest(String text, Integer limit) {
+        nameSuggester.ensureLoaded(UserItemType.RECIPE, () -> NameSearchIndex.names(recipeRepository.findAllIdsAndNames()));
+        return nameSuggester.suggest(UserItemType.RECIPE, text, limit);
+    }
 
     public int getFavoriteCount(Long recipeId) {
-        return userPreferenceRepository.countByItemTypeAndItemIdAndPreferenceType(UserItemType.RECIPE, recipeId, PreferenceType.LIKE);
+        return (int) itemPopularityCounter.getLikes(UserItemType.RECIPE, recipeId);
     }
 
-    public List<Recipe> getAllWithFilters(Map<String, String> filters, String sortField, String sortOrder, int start, int end) {
+    /**
+     * Returns the summaries of a range of the recipes matching the filters. The IDs of the range are found first,
+     * then their summaries are read in one query.
+     */
+    public List<RecipeSummary> getAllWithFilters(Map<String, String> filters, String sortField, String sortOrder, int start, int end) {
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Recipe> query = cb.createQuery(Recipe.class);
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
         Root<Recipe> recipe = query.from(Recipe.class);
+        query.select(recipe.get("id"));
 
         Predicate predicate = cb.conjunction();
 
@@ -278,60 +553,15 @@ public class RecipeService {
             query.orderBy(cb.desc(recipe.get(sortField)));
         }
 
-        TypedQuery<Recipe> typedQuery = entityManager.createQuery(query);
+        TypedQuery<Long> typedQuery = entityManager.createQuery(query);
         typedQuery.setFirstResult(start);
         typedQuery.setMaxResults(end - start + 1);
 
-        return typedQuery.getResultList();
-    }
-
-
-    // ===================== Recipe Filter Helper Methods =====================
-
-    private boolean matchesDietaryPreferences(Recipe recipe, List<DietaryPreference> preferences) {
-        return preferences == null || recipe.getDietaryPreferences().containsAll(preferences);
+        return findSummaries(typedQuery.getResultList());
     }
 
-    private boolean matchesName(Recipe recipe, String name) {
-        return name == null || recipe.getName().contains(name);
-    }
-
-    private boolean excludesAllergens(Recipe recipe, List<Allergen> allergens) {
-        return allergens == null || Collections.disjoint(recipe.getAllergens(), allergens);
-    }
-
-    private boolean matchesHealthConditions(Recipe recipe, List<HealthConditionSuitability> conditions) {
-        return conditions == null || recipe.getHealthConditionSuitabilities().containsAll(conditions);
-    }
-
-    private boolean matchesRecipeTypes(Recipe recipe, List<RecipeType> recipeTypes) {
-        return recipeTypes == null || recipeTypes.isEmpty() || !Collections.disjoint(recipe.getRecipeTypes(), recipeTypes);
-    }
-
-    private boolean containsIngredients(Recipe recipe, List<String> ingredientNames) {
-        if (ingredientNames == null || ingredientNames.isEmpty()) return true;
-
-        Set<String> recipeIngredientNames = recipe.getIngredients().stream()
-                .map(ingredient -> ingredient.getFoodItem().getName().toLowerCase())
-                .collect(Collectors.toSet());
-
-        return ingredientNames.stream()
-                .map(String::toLowerCase)
-                .allMatch(recipeIngredientNames::contains);
-    }
-
-    private boolean withinCalorieRange(Recipe recipe, Float minCalories, Float maxCalories) {
-        boolean meetsMinCalories = minCalories == null || recipe.getMacronutrients().getCalories() >= minCalories;
-        boolean meetsMaxCalories = maxCalories == null || recipe.getMacronutrients().getCalories() <= maxCalories;
-
-        return meetsMinCalories && meetsMaxCalories;
-    }
-
-    private boolean withinTime(Recipe recipe, Float maxTotalTime) {
-        return maxTotalTime == null || (recipe.getPreparationTime() + recipe.getCookingTime()) <= maxTotalTime;
-    }
 
     public Set<Recipe> getRecipesByIds(Set<Long> recipeIds) {
-        return new HashSet<>(recipeRepository.findByIdIn(recipeIds));
+        return new HashSet<>(findAllWithDetails(new ArrayList<>(recipeIds)));
     }
 }
@@ -0,0 +1,65 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.interfeces.PreferenceReasoner;
+import fit.health.fithealthapi.model.dto.InferredPreferences;
+import fit.health.fithealthapi.model.enums.DietaryPreference;
+import fit.health.fithealthapi.model.enums.HealthConditionSuitability;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The OWL API structural reasoner. It only follows the asserted class hierarchy, so it is fast but infers
+ * none of the defined preference classes; meant for debugging and for ontologies that assert them.
+ */
+@Component
+public class StructuralPreferenceReasoner implements PreferenceReasoner {
+
+    private final OWLReasonerFactory reasonerFactory = new StructuralReasonerFactory();
+
+    @Override
+    public String getName() {
+        return "structural";
+    }
+
+    @Override
+    public OWLReasonerFactory getReasonerFactory() {
+        return reasonerFactory;
+    }
+
+    @Override
+    public InferredPreferences classify(OWLClass item, ClassificationModule module) {
+        OWLReasoner reasoner = null;
+        try {
+            reasoner = reasonerFactory.createReasoner(OWLManager.createOWLOntologyManager().createOntology(module.getAxioms()));
+            Set<OWLClass> superClasses = reasoner.getSuperClasses(item, false).getFlattened();
+            Set<DietaryPreference> dietaryPreferences = EnumSet.noneOf(DietaryPreference.class);
+            module.dietaryPreferenceClasses().forEach((owlClass, preference) -> {
+                if (superClasses.contains(owlClass)) {
+                    dietaryPreferences.add(preference);
+                }
+            });
+            Set<HealthConditionSuitability> healthConditionSuitabilities = EnumSet.noneOf(HealthConditionSuitability.class);
+            module.healthConditionSuitabilityClasses().forEach((owlClass, suitability) -> {
+                if (superClasses.contains(owlClass)) {
+                    healthConditionSuitabilities.add(suitability);
+                }
+            });
+            return new InferredPreferences(Collections.unmodifiableSet(dietaryPreferences),
+                    Collections.unmodifiableSet(healthConditionSuitabilities));
+        } catch (OWLOntologyCreationException e) {
+            throw new RuntimeException("Failed to create classification module: " + e.getMessage(), e);
+        } finally {
+            if (reasoner != null) {
+                reasoner.dispose();
+            }
+        }
+    }
+}
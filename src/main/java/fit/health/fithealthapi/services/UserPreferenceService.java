@@ -8,6 +8,7 @@ import fit.health.fithealthapi.model.UserPreference;
 import fit.health.fithealthapi.model.enums.PreferenceType;
 import fit.health.fithealthapi.model.enums.UserItemType;
 import fit.health.fithealthapi.repository.*;
+import fit.health.fithealthapi.utils.TransactionUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -22,6 +23,7 @@ public class UserPreferenceService {
     private final RecipeRepository recipeRepository;
     private final MealRepository mealRepository;
     private final FoodItemRepository foodItemRepository;
+    private final ItemPopularityCounter popularityCounter;
 
     public UserPreference like(User user, UserItemType type, Long itemId) {
         return saveOrUpdate(user, type, itemId, PreferenceType.LIKE);
@@ -46,20 +48,25 @@ public class UserPreferenceService {
         if (!doesItemExist(type, itemId)) {
             throw new NotFoundException("Item of type " + type + " with ID " + itemId + " not found.");
         }
-        return repository.findByUserAndItemTypeAndItemId(user, type, itemId)
-                .map(existing -> {
-                    existing.setPreferenceType(preferenceType);
-                    existing.setTimestamp(LocalDateTime.now());
-                    return repository.save(existing);
-                })
-                .orElseGet(() -> repository.save(
-                        UserPreference.builder()
-                                .user(user)
-                                .itemType(type)
-                                .itemId(itemId)
-                                .preferenceType(preferenceType)
-                                .timestamp(LocalDateTime.now())
-                                .build()));
+        UserPreference existing = repository.findByUserAndItemTypeAndItemId(user, type, itemId).orElse(null);
+        PreferenceType previous = existing == null ? null : existing.getPreferenceType();
+        UserPreference saved;
+        if (existing != null) {
+            existing.setPreferenceType(preferenceType);
+            existing.setTimestamp(LocalDateTime.now());
+            saved = repository.save(existing);
+        } else {
+            saved = repository.save(
+                    UserPreference.builder()
+                            .user(user)
+                            .itemType(type)
+                            .itemId(itemId)
+                            .preferenceType(preferenceType)
+                            .timestamp(LocalDateTime.now())
+                            .build());
+        }
+        TransactionUtils.afterCommit(() -> popularityCounter.changed(type, itemId, previous, preferenceType));
+        return saved;
     }
 
     private boolean doesItemExist(UserItemType type, Long id) {
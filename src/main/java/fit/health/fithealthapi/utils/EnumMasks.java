@@ -0,0 +1,47 @@
+package fit.health.fithealthapi.utils;
+
+import java.util.Collection;
+import java.util.EnumSet;
+
+/**
+ * Sets of enum constants as bitmasks, bit {@code n} standing for the constant with ordinal {@code n}.
+ * Masks are persisted, so new constants must be added at the end of their enum.
+ */
+public class EnumMasks {
+
+    public static <E extends Enum<E>> long toMask(Collection<E> values) {
+        long mask = 0;
+        if (values != null) {
+            for (E value : values) {
+                mask |= 1L << value.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    public static <E extends Enum<E>> EnumSet<E> fromMask(long mask, Class<E> type) {
+        EnumSet<E> values = EnumSet.noneOf(type);
+        for (E value : type.getEnumConstants()) {
+            if ((mask & (1L << value.ordinal())) != 0) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    public static <E extends Enum<E>> EnumSet<E> copyOf(Collection<E> values, Class<E> type) {
+        EnumSet<E> copy = EnumSet.noneOf(type);
+        if (values != null) {
+            copy.addAll(values);
+        }
+        return copy;
+    }
+
+    public static boolean containsAll(long mask, long required) {
+        return (mask & required) == required;
+    }
+
+    public static boolean intersects(long mask, long other) {
+        return (mask & other) != 0;
+    }
+}
@@ -22,7 +22,7 @@ public class MacronutrientCalculator {
         return result;
     }
 
-    private static Macronutrients scale(Macronutrients base, float ratio) {
+    public static Macronutrients scale(Macronutrients base, float ratio) {
         return new Macronutrients(null,
                 base.getCalories() * ratio,
                 base.getProtein() * ratio,
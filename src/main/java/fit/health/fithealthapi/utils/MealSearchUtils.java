@@ -9,12 +9,22 @@ import fit.health.fithealthapi.model.enums.Visibility;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Predicate;
 
 public class MealSearchUtils {
 
     public static <T extends MealAggregator> List<T> filterMeals(List<T> meals, MealSearchDto dto) {
+        return filterMeals(meals, dto, meal -> filterByQuery(meal, dto.getQuery()));
+    }
+
+    /**
+     * Filters the meals like {@link #filterMeals(List, MealSearchDto)}, with the query matched by the given
+     * predicate, such as when the meals were already found by their names. The order of the meals is kept
+     * unless the search sorts them.
+     */
+    public static <T extends MealAggregator> List<T> filterMeals(List<T> meals, MealSearchDto dto, Predicate<T> matchesQuery) {
         return meals.stream()
-                .filter(meal -> filterByQuery(meal, dto.getQuery()))
+                .filter(matchesQuery)
                 .filter(meal -> filterByUser(meal, dto.getUserId()))
                 .filter(meal -> filterByVisibility(meal, dto.getUserId()))
                 .filter(meal -> filterByPreferences(meal, dto))
@@ -49,19 +59,19 @@ public class MealSearchUtils {
     private static boolean filterByPreferences(MealAggregator meal, MealSearchDto dto) {
         if (dto.getDietaryPreferences() != null && !dto.getDietaryPreferences().isEmpty()) {
             if (meal instanceof NutritionalProfile profile) {
-                if (!profile.getDietaryPreferences().containsAll(dto.getDietaryPreferences())) return false;
+                if (!EnumMasks.containsAll(profile.getDietaryPreferencesMask(), EnumMasks.toMask(dto.getDietaryPreferences()))) return false;
             }
         }
 
         if (dto.getHealthConditions() != null && !dto.getHealthConditions().isEmpty()) {
             if (meal instanceof NutritionalProfile profile) {
-                if (!profile.getHealthConditionSuitabilities().containsAll(dto.getHealthConditions())) return false;
+                if (!EnumMasks.containsAll(profile.getHealthConditionSuitabilitiesMask(), EnumMasks.toMask(dto.getHealthConditions()))) return false;
             }
         }
 
         if (dto.getExcludeAllergens() != null && !dto.getExcludeAllergens().isEmpty()) {
             if (meal instanceof NutritionalProfile profile) {
-                if (profile.getAllergens().stream().anyMatch(dto.getExcludeAllergens()::contains)) return false;
+                if (EnumMasks.intersects(profile.getAllergensMask(), EnumMasks.toMask(dto.getExcludeAllergens()))) return false;
             }
         }
 
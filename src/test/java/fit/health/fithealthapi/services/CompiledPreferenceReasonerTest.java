@@ -0,0 +1,175 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.dto.InferredPreferences;
+import fit.health.fithealthapi.model.enums.DietaryPreference;
+import fit.health.fithealthapi.model.enums.HealthConditionSuitability;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.File;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the compiled evaluator against HermiT on every item of the ontology and on items that exercise
+ * the edges of the preference definitions.
+ */
+class CompiledPreferenceReasonerTest {
+
+    private static final File ONTOLOGY_FILE = new File("src/main/java/fit/health/fithealthapi/ontology/health.owl");
+
+    private OWLOntologyManager manager;
+    private OWLDataFactory dataFactory;
+    private OWLOntology ontology;
+    private String ontologyIRI;
+    private OWLClass foodItem;
+    private OWLClass recipe;
+    private IncrementalPreferenceClassifier classifier;
+
+    private final HermitPreferenceReasoner hermit = new HermitPreferenceReasoner();
+    private final CompiledPreferenceReasoner compiled = new CompiledPreferenceReasoner();
+
+    @BeforeEach
+    void loadOntology() throws OWLOntologyCreationException {
+        manager = OWLManager.createOWLOntologyManager();
+        dataFactory = manager.getOWLDataFactory();
+        ontology = manager.loadOntologyFromOntologyDocument(ONTOLOGY_FILE);
+        ontologyIRI = ontology.getOntologyID().getOntologyIRI() + "#";
+        foodItem = owlClass("FoodItem");
+        recipe = owlClass("Recipe");
+        classifier = new IncrementalPreferenceClassifier(ontology, this::isItem,
+                CompiledPreferenceReasonerTest::name,
+                byName(DietaryPreference.values()), byName(HealthConditionSuitability.values()));
+    }
+
+    @Test
+    void matchesHermitForEveryItemInTheOntology() {
+        List<OWLClass> items = ontology.getClassesInSignature().stream().filter(this::isItem).toList();
+        assertFalse(items.isEmpty());
+        for (OWLClass item : items) {
+            assertSameAsHermit(item);
+        }
+    }
+
+    @Test
+    void matchesHermitForFoodItemsAtTheEdgesOfTheDefinitions() {
+        addFoodItem("Test_Lean_Vegetable", 20f, 1f, 0.1f, 2f, 0.01f, "Allergen_Free");
+        addFoodItem("Test_Rich_Cheese", 450f, 25f, 35f, 0.5f, 1.8f, "Dairy");
+        addFoodItem("Test_Bread", 265f, 9f, 3.2f, 5f, 1.2f, "Gluten");
+        addFoodItem("Test_Sweet_Nut", 600f, 20f, 50f, 30f, 0f, "Nut");
+        addFoodItem("Test_Sausage", 300f, 12f, 27f, 1f, 2.5f, "Meat");
+        addFoodItem("Test_Zero", 0f, 0f, 0f, 0f, 0f, "Plant_Based");
+
+        for (String name : List.of("Test_Lean_Vegetable", "Test_Rich_Cheese", "Test_Bread", "Test_Sweet_Nut",
+                "Test_Sausage", "Test_Zero")) {
+            assertSameAsHermit(owlClass(name));
+        }
+        assertTrue(compiled.classify(owlClass("Test_Lean_Vegetable"), classifier.extractModule(owlClass("Test_Lean_Vegetable")))
+                .getDietaryPreferences().containsAll(Set.of(DietaryPreference.LOW_CALORIE, DietaryPreference.VEGAN)));
+    }
+
+    @Test
+    void treatsAnItemWithContradictingAllergensLikeHermit() {
+        addFoodItem("Test_Cheese_Burger", 300f, 15f, 20f, 5f, 1.5f, "Dairy", "Meat");
+
+        InferredPreferences inferred = assertSameAsHermit(owlClass("Test_Cheese_Burger"));
+        assertEquals(EnumSet.copyOf(classifier.extractModule(owlClass("Test_Cheese_Burger")).dietaryPreferenceClasses().values()),
+                inferred.getDietaryPreferences());
+    }
+
+    @Test
+    void matchesHermitForRecipes() {
+        addFoodItem("Test_Lean_Vegetable", 20f, 1f, 0.1f, 2f, 0.01f, "Allergen_Free");
+        addFoodItem("Test_Rice", 130f, 2.7f, 0.3f, 0.1f, 0f, "Plant_Based");
+        addFoodItem("Test_Bread", 265f, 9f, 3.2f, 5f, 1.2f, "Gluten");
+        addFoodItem("Test_Rich_Cheese", 450f, 25f, 35f, 0.5f, 1.8f, "Dairy");
+        addRecipe("Test_Vegetable_Rice", 150f, 4f, 0.5f, 2f, 0.1f, "Test_Lean_Vegetable", "Test_Rice");
+        addRecipe("Test_Cheese_Toast", 700f, 34f, 38f, 5.5f, 3f, "Test_Bread", "Test_Rich_Cheese");
+        addRecipe("Test_Plain_Vegetable", 20f, 1f, 0.1f, 2f, 0.01f, "Test_Lean_Vegetable");
+        addRecipe("Test_Empty_Recipe", 0f, 0f, 0f, 0f, 0f);
+
+        for (String name : List.of("Test_Vegetable_Rice", "Test_Cheese_Toast", "Test_Plain_Vegetable", "Test_Empty_Recipe")) {
+            assertSameAsHermit(owlClass(name));
+        }
+    }
+
+    private InferredPreferences assertSameAsHermit(OWLClass item) {
+        ClassificationModule module = classifier.extractModule(item);
+        InferredPreferences expected = hermit.classify(item, module);
+        InferredPreferences actual = compiled.classify(item, module);
+        String name = name(item);
+        assertEquals(expected.getDietaryPreferences(), actual.getDietaryPreferences(), name);
+        assertEquals(expected.getHealthConditionSuitabilities(), actual.getHealthConditionSuitabilities(), name);
+        return actual;
+    }
+
+    private void addFoodItem(String name, float calories, float protein, float fat, float sugar, float salt,
+                             String... allergens) {
+        Set<OWLClassExpression> definition = new HashSet<>(List.of(foodItem,
+                hasValue("caloriesPer100gram", calories), hasValue("proteinContent", protein),
+                hasValue("fatContent", fat), hasValue("sugarContent", sugar), hasValue("saltContent", salt)));
+        for (String allergen : allergens) {
+            definition.add(dataFactory.getOWLObjectSomeValuesFrom(objectProperty("hasAllergen"), owlClass(allergen)));
+        }
+        define(owlClass(name), definition);
+    }
+
+    private void addRecipe(String name, float calories, float protein, float fat, float sugar, float salt,
+                           String... ingredients) {
+        Set<OWLClassExpression> ingredientClasses = Arrays.stream(ingredients).map(this::owlClass).collect(Collectors.toSet());
+        OWLClassExpression filler = ingredientClasses.isEmpty() ? dataFactory.getOWLNothing()
+                : ingredientClasses.size() == 1 ? ingredientClasses.iterator().next()
+                : dataFactory.getOWLObjectUnionOf(ingredientClasses);
+        define(owlClass(name), new HashSet<>(List.of(recipe,
+                dataFactory.getOWLObjectAllValuesFrom(objectProperty("hasIngredient"), filler),
+                hasValue("totalCalories", calories), hasValue("totalProtein", protein), hasValue("totalFat", fat),
+                hasValue("totalSugar", sugar), hasValue("totalSalt", salt), hasValue("cookingTime", 20))));
+    }
+
+    /**
+     * Adds the item the way the services do: a subclass restriction per value, then a defined class made of them.
+     */
+    private void define(OWLClass item, Set<OWLClassExpression> definition) {
+        for (OWLClassExpression expression : definition) {
+            manager.addAxiom(ontology, dataFactory.getOWLSubClassOfAxiom(item, expression));
+        }
+        manager.addAxiom(ontology, dataFactory.getOWLEquivalentClassesAxiom(item, dataFactory.getOWLObjectIntersectionOf(definition)));
+    }
+
+    private OWLClassExpression hasValue(String property, float value) {
+        return dataFactory.getOWLDataHasValue(dataFactory.getOWLDataProperty(IRI.create(ontologyIRI + property)),
+                dataFactory.getOWLLiteral(value));
+    }
+
+    private OWLClassExpression hasValue(String property, int value) {
+        return dataFactory.getOWLDataHasValue(dataFactory.getOWLDataProperty(IRI.create(ontologyIRI + property)),
+                dataFactory.getOWLLiteral(value));
+    }
+
+    private OWLObjectProperty objectProperty(String name) {
+        return dataFactory.getOWLObjectProperty(IRI.create(ontologyIRI + name));
+    }
+
+    private OWLClass owlClass(String name) {
+        return dataFactory.getOWLClass(IRI.create(ontologyIRI + name));
+    }
+
+    private static String name(OWLClass owlClass) {
+        String iri = owlClass.getIRI().toString();
+        return iri.substring(iri.indexOf('#') + 1);
+    }
+
+    private boolean isItem(OWLClass owlClass) {
+        return ontology.getSubClassAxiomsForSubClass(owlClass).stream()
+                .map(OWLSubClassOfAxiom::getSuperClass)
+                .anyMatch(superClass -> superClass.equals(foodItem) || superClass.equals(recipe));
+    }
+
+    private static <E extends Enum<E>> Map<String, E> byName(E[] values) {
+        return Arrays.stream(values).collect(Collectors.toMap(Enum::name, value -> value));
+    }
+}
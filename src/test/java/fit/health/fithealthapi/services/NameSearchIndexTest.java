@@ -0,0 +1,91 @@
+package fit.health.fithealthapi.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the name index against a scan of the folded names over random names and queries, after renames and
+ * deletions, and that a query with a typo finds the name it was meant for.
+ */
+class NameSearchIndexTest {
+
+    private static final String[] WORDS = {"Crème", "brûlée", "Chicken", "soup", "Gâteau", "au", "chocolat",
+            "Pho", "Bò", "Kimchi-jjigae", "Œuf", "cocotte", "Spätzle", "Pasta", "e", "fagioli"};
+
+    private final Random random = new Random(3);
+    private final Map<Long, String> names = new HashMap<>();
+    private final NameSearchIndex index = new NameSearchIndex();
+
+    @Test
+    void matchesScanningEveryFoldedName() {
+        for (long id = 1; id <= 2_000; id++) {
+            names.put(id, randomName());
+        }
+        index.ensureLoaded(NameSearchIndex.Kind.RECIPE, () -> names);
+        assertSearchesMatch(300);
+
+        for (long id = 1; id <= 200; id++) {
+            names.put(id, randomName());
+            index.put(NameSearchIndex.Kind.RECIPE, id, names.get(id));
+        }
+        for (long id = 201; id <= 400; id++) {
+            names.remove(id);
+            index.remove(NameSearchIndex.Kind.RECIPE, id);
+        }
+        assertSearchesMatch(300);
+        assertTrue(index.search(NameSearchIndex.Kind.FOOD_ITEM, "soup").isEmpty());
+    }
+
+    @Test
+    void findsNamesDespiteATypo() {
+        index.ensureLoaded(NameSearchIndex.Kind.FOOD_ITEM, () -> Map.of(
+                1L, "Chicken breast", 2L, "Chickpeas", 3L, "Crème fraîche", 4L, "Broccoli"));
+
+        assertEquals(Set.of(1L), index.search(NameSearchIndex.Kind.FOOD_ITEM, "chiken breast"));
+        assertEquals(List.of(3L), new ArrayList<>(index.search(NameSearchIndex.Kind.FOOD_ITEM, "CREME FRAICHE")));
+        assertEquals(Set.of(4L), index.search(NameSearchIndex.Kind.FOOD_ITEM, "brocoli"));
+        assertTrue(index.search(NameSearchIndex.Kind.FOOD_ITEM, "salmon").isEmpty());
+    }
+
+    private void assertSearchesMatch(int searches) {
+        for (int i = 0; i < searches; i++) {
+            String query = randomQuery();
+            List<String> words = List.of(NameSearchIndex.fold(query).split(" "));
+            Set<Long> expected = new HashSet<>();
+            names.forEach((id, name) -> {
+                if (words.stream().allMatch(NameSearchIndex.fold(name)::contains)) {
+                    expected.add(id);
+                }
+            });
+            Set<Long> found = index.search(NameSearchIndex.Kind.RECIPE, query);
+            // With no exact match, the closest names are returned instead
+            if (!expected.isEmpty()) {
+                assertEquals(expected, found, query);
+            }
+        }
+    }
+
+    private String randomName() {
+        StringBuilder name = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+        for (int i = random.nextInt(4); i > 0; i--) {
+            name.append(random.nextBoolean() ? " " : ", ").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return name.toString();
+    }
+
+    /**
+     * One or two words, or parts of words, in any case.
+     */
+    private String randomQuery() {
+        StringBuilder query = new StringBuilder();
+        for (int i = random.nextInt(2); i >= 0; i--) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            int start = random.nextInt(word.length());
+            query.append(' ').append(word, start, start + 1 + random.nextInt(word.length() - start));
+        }
+        return random.nextBoolean() ? query.toString().toUpperCase() : query.toString();
+    }
+}
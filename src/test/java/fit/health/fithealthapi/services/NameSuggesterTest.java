@@ -0,0 +1,95 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.dto.NameSuggestion;
+import fit.health.fithealthapi.model.enums.UserItemType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the suggestions against a scan of every name for random prefixes, before and after renames, deletions
+ * and a rebuild.
+ */
+class NameSuggesterTest {
+
+    private static final String[] WORDS = {"Chicken", "chickpea", "Crème", "brûlée", "Broccoli", "soup", "Bread",
+            "rice", "Rice-cake", "Oat", "milk", "Ôlive", "oil", "Pasta"};
+
+    private final Random random = new Random(5);
+    private final Map<Long, String> names = new HashMap<>();
+    private final Map<Long, Long> likes = new HashMap<>();
+    private final ItemPopularityCounter itemPopularityCounter = mock(ItemPopularityCounter.class);
+    private final NameSuggester suggester = new NameSuggester(itemPopularityCounter, 10, 3_600_000);
+
+    @Test
+    void suggestsTheMostLikedMatchingNames() {
+        when(itemPopularityCounter.getLikes(any(), anyLong()))
+                .thenAnswer(invocation -> likes.getOrDefault(invocation.<Long>getArgument(1), 0L));
+        for (long id = 1; id <= 3_000; id++) {
+            names.put(id, randomName());
+            likes.put(id, (long) random.nextInt(50));
+        }
+        suggester.ensureLoaded(UserItemType.FOOD_ITEM, () -> names);
+        assertSuggestionsMatch();
+
+        for (long id = 1; id <= 300; id++) {
+            names.put(id, randomName());
+            suggester.put(UserItemType.FOOD_ITEM, id, names.get(id));
+        }
+        for (long id = 301; id <= 600; id++) {
+            names.remove(id);
+            suggester.remove(UserItemType.FOOD_ITEM, id);
+        }
+        for (long id = 3_001; id <= 3_100; id++) {
+            names.put(id, randomName());
+            likes.put(id, (long) random.nextInt(50));
+            suggester.put(UserItemType.FOOD_ITEM, id, names.get(id));
+        }
+        // Renamed and deleted items may take the place of matching ones until the rebuild
+        suggester.rebuild();
+        assertSuggestionsMatch();
+        assertTrue(suggester.suggest(UserItemType.RECIPE, "chi", null).isEmpty());
+    }
+
+    @AfterEach
+    void stopRebuilds() {
+        suggester.shutdown();
+    }
+
+    private void assertSuggestionsMatch() {
+        Map<Long, String> folded = new HashMap<>();
+        names.forEach((id, name) -> folded.put(id, " " + NameSearchIndex.fold(name)));
+        for (int i = 0; i < 300; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            String prefix = word.substring(0, 1 + random.nextInt(word.length()));
+            String foldedPrefix = " " + NameSearchIndex.fold(prefix);
+            int limit = 1 + random.nextInt(10);
+            List<Long> expectedLikes = folded.entrySet().stream()
+                    .filter(entry -> entry.getValue().contains(foldedPrefix))
+                    .map(entry -> likes.get(entry.getKey()))
+                    .sorted(Comparator.reverseOrder())
+                    .limit(limit)
+                    .toList();
+
+            List<NameSuggestion> suggestions = suggester.suggest(UserItemType.FOOD_ITEM, prefix.toUpperCase(), limit);
+            // Items with the same number of likes may be suggested in place of one another
+            assertEquals(expectedLikes, suggestions.stream().map(NameSuggestion::getLikes).toList(), prefix);
+            suggestions.forEach(suggestion -> assertEquals(names.get(suggestion.getId()), suggestion.getName()));
+        }
+    }
+
+    private String randomName() {
+        StringBuilder name = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+        for (int i = random.nextInt(3); i > 0; i--) {
+            name.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,173 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.*;
+import fit.health.fithealthapi.model.enums.Unit;
+import fit.health.fithealthapi.repository.MealItemRepository;
+import fit.health.fithealthapi.repository.MealRepository;
+import fit.health.fithealthapi.repository.RecipeRepository;
+import fit.health.fithealthapi.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Changes the macronutrients of a food item used directly by a meal and through a recipe, and checks that the
+ * recipe, in the database and in the ontology, then once recomputed the meal items and the meal, have the totals a
+ * full calculation gives.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:nutrition-recompute;DB_CLOSE_DELAY=-1",
+        "nutrition.recompute.interval-ms=3600000"})
+class NutritionRecomputerTest {
+
+    private static final float TOLERANCE = 0.01f;
+
+    @Autowired
+    private FoodItemService foodItemService;
+    @Autowired
+    private RecipeService recipeService;
+    @Autowired
+    private MealService mealService;
+    @Autowired
+    private NutritionRecomputer nutritionRecomputer;
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private MealRepository mealRepository;
+    @Autowired
+    private MealItemRepository mealItemRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private OntologyService ontologyService;
+
+    private static Path ontologyFile;
+
+    // The food items and recipes created are added to a copy of the ontology
+    @DynamicPropertySource
+    static void ontologyCopy(DynamicPropertyRegistry registry) throws IOException {
+        ontologyFile = Files.createTempDirectory("nutrition-recompute").resolve("health.owl");
+        Files.copy(Path.of("src/main/java/fit/health/fithealthapi/ontology/health.owl"), ontologyFile);
+        registry.add("ontology.file", ontologyFile::toString);
+    }
+
+    @Test
+    void recalculatesWhatDependsOnAChangedFoodItem() throws OWLOntologyCreationException {
+        User owner = new User();
+        owner.setUsername("nutrition-user");
+        owner.setPassword("password");
+        owner = userRepository.save(owner);
+        FoodItem oats = foodItemService.saveFoodItem(foodItem(owner, "Rolled oats", 380, 13, 7, 1, 0.01f));
+        FoodItem milk = foodItemService.saveFoodItem(foodItem(owner, "Whole milk", 64, 3.4f, 3.6f, 4.8f, 0.1f));
+
+        Recipe porridge = new Recipe();
+        porridge.setName("Porridge");
+        porridge.setPreparationTime(2);
+        porridge.setCookingTime(5);
+        porridge.setServingSize(2);
+        porridge.setOwner(owner);
+        porridge.setIngredients(Set.of(ingredient(oats, 80, Unit.GRAMS), ingredient(milk, 0.25f, Unit.KILOGRAMS)));
+        porridge = recipeService.saveRecipe(porridge);
+
+        Meal breakfast = new Meal();
+        breakfast.setName("Breakfast");
+        breakfast.setMealItems(new HashSet<>(List.of(mealItem(owner, porridge, 1f, null), mealItem(owner, milk, null, 200f))));
+        breakfast = mealService.createMeal(breakfast, owner);
+
+        FoodItem skimmed = foodItem(owner, "Skimmed milk", 35, 3.4f, 0.1f, 5, 0.1f);
+        skimmed.setOntologyLinkedName(milk.getOntologyLinkedName());
+        foodItemService.updateFoodItem(milk.getId(), skimmed);
+
+        // The recipe is updated with the food item, by the grams of milk it uses
+        Macronutrients expectedRecipe = total(80, 380, 13, 7, 1, 0.01f);
+        expectedRecipe.add(total(250, 35, 3.4f, 0.1f, 5, 0.1f));
+        assertMacronutrients(expectedRecipe, recipeRepository.findById(porridge.getId()).orElseThrow().getMacronutrients());
+        List<Float> ontologyCalories = dataValues(porridge.getOntologyLinkedName(), "totalCalories");
+        assertEquals(1, ontologyCalories.size());
+        assertEquals(expectedRecipe.getCalories(), ontologyCalories.get(0), TOLERANCE);
+
+        nutritionRecomputer.recompute();
+        Macronutrients expectedMeal = total(40, 380, 13, 7, 1, 0.01f);
+        expectedMeal.add(total(125, 35, 3.4f, 0.1f, 5, 0.1f));
+        expectedMeal.add(total(200, 35, 3.4f, 0.1f, 5, 0.1f));
+        assertMacronutrients(expectedMeal, mealRepository.findById(breakfast.getId()).orElseThrow().getMacronutrients());
+        Float milkCalories = mealItemRepository.findAll().stream()
+                .filter(item -> item.getComponent().getId().equals(milk.getId()))
+                .map(item -> item.getMacronutrients().getCalories())
+                .findFirst().orElseThrow();
+        assertEquals(70f, milkCalories, TOLERANCE);
+    }
+
+    /**
+     * The values a class is restricted to for a data property, read from the ontology as saved.
+     */
+    private List<Float> dataValues(String className, String propertyName) throws OWLOntologyCreationException {
+        ontologyService.saveOntology();
+        OWLOntology saved = OWLManager.createOWLOntologyManager()
+                .loadOntologyFromOntologyDocument(ontologyFile.toFile());
+        return saved.getAxioms(AxiomType.SUBCLASS_OF).stream()
+                .filter(axiom -> !axiom.getSubClass().isAnonymous()
+                        && className.equals(
+                                ontologyService.getFragment(axiom.getSubClass().asOWLClass().getIRI().toString())))
+                .map(OWLSubClassOfAxiom::getSuperClass)
+                .filter(OWLDataHasValue.class::isInstance)
+                .map(OWLDataHasValue.class::cast)
+                .filter(hasValue -> propertyName.equals(
+                        ontologyService.getFragment(hasValue.getProperty().asOWLDataProperty().getIRI().toString())))
+                .map(hasValue -> hasValue.getValue().parseFloat())
+                .toList();
+    }
+
+    private static FoodItem foodItem(User owner, String name, float calories, float protein, float fat, float sugar,
+                                     float salt) {
+        FoodItem foodItem = new FoodItem();
+        foodItem.setName(name);
+        foodItem.setOwner(owner);
+        foodItem.setMacronutrients(new Macronutrients(null, calories, protein, fat, sugar, salt));
+        return foodItem;
+    }
+
+    private static RecipeIngredient ingredient(FoodItem foodItem, float quantity, Unit unit) {
+        RecipeIngredient ingredient = new RecipeIngredient();
+        ingredient.setFoodItem(foodItem);
+        ingredient.setQuantity(quantity);
+        ingredient.setUnit(unit);
+        return ingredient;
+    }
+
+    private static MealItem mealItem(User owner, MealComponent component, Float portionSize, Float weightGrams) {
+        MealItem item = new MealItem();
+        item.setOwner(owner);
+        item.setComponent(component);
+        item.setPortionSize(portionSize);
+        item.setWeightGrams(weightGrams);
+        return item;
+    }
+
+    /**
+     * The macronutrients of the given grams of a food item, from its values per 100 g.
+     */
+    private static Macronutrients total(float grams, float calories, float protein, float fat, float sugar, float salt) {
+        float ratio = grams / 100;
+        return new Macronutrients(null, calories * ratio, protein * ratio, fat * ratio, sugar * ratio, salt * ratio);
+    }
+
+    private static void assertMacronutrients(Macronutrients expected, Macronutrients actual) {
+        assertEquals(expected.getCalories(), actual.getCalories(), TOLERANCE);
+        assertEquals(expected.getProtein(), actual.getProtein(), TOLERANCE);
+        assertEquals(expected.getFat(), actual.getFat(), TOLERANCE);
+        assertEquals(expected.getSugar(), actual.getSugar(), TOLERANCE);
+        assertEquals(expected.getSalt(), actual.getSalt(), TOLERANCE);
+    }
+}
@@ -0,0 +1,50 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.enums.DietaryPreference;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts the application on a database whose meals still keep their dietary preferences in a collection table,
+ * and checks that the masks were filled before the schema update and are not null once it has run.
+ */
+@SpringBootTest(properties = "spring.datasource.url=" + NutritionalProfileMaskMigrationTest.URL)
+class NutritionalProfileMaskMigrationTest {
+
+    static final String URL = "jdbc:h2:mem:mask-migration;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void legacySchema(DynamicPropertyRegistry registry) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "password");
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table meals (id bigint auto_increment primary key, name varchar(255))");
+            statement.execute("create table meal_dietary_preferences (meal_id bigint not null, dietary_preferences varchar(255))");
+            statement.execute("insert into meals (id, name) values (1, 'Salad'), (2, 'Stew')");
+            statement.execute("insert into meal_dietary_preferences values (1, 'VEGAN'), (1, 'LOW_FAT'), (1, 'UNKNOWN')");
+        }
+    }
+
+    @Test
+    void fillsTheMasksBeforeTheSchemaUpdate() {
+        long vegan = 1L << DietaryPreference.VEGAN.ordinal() | 1L << DietaryPreference.LOW_FAT.ordinal();
+        assertEquals(vegan, jdbcTemplate.queryForObject("select dietary_preferences_mask from meals where id = 1", Long.class));
+        assertEquals(0L, jdbcTemplate.queryForObject("select dietary_preferences_mask from meals where id = 2", Long.class));
+        assertEquals(0L, jdbcTemplate.queryForObject("select allergens_mask from meals where id = 2", Long.class));
+        assertEquals("NO", jdbcTemplate.queryForObject("select is_nullable from information_schema.columns"
+                + " where table_name = 'MEALS' and column_name = 'DIETARY_PREFERENCES_MASK'", String.class));
+    }
+}
@@ -0,0 +1,51 @@
+package fit.health.fithealthapi.services;
+
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Appends two batches and the start of a third, as a crash would leave it, and checks that replay applies the two
+ * complete batches and cuts the incomplete one off the journal.
+ */
+class OntologyJournalTest {
+
+    private static final String BASE = "http://example.org/journal#";
+
+    @Test
+    void replayCutsOffAnIncompleteBatch() throws OWLOntologyCreationException, IOException {
+        Path file = Files.createTempDirectory("ontology-journal").resolve("health.owl.journal");
+        OntologyJournal journal = new OntologyJournal(Long.MAX_VALUE);
+        journal.attach(file);
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        OWLOntology ontology = manager.createOntology();
+        OWLDataFactory factory = manager.getOWLDataFactory();
+        OWLAxiom soup = subClass(factory, "Soupe_à_l_oignon", "Recipe");
+        OWLAxiom oats = subClass(factory, "Oats", "FoodItem");
+
+        journal.append(List.of(new AddAxiom(ontology, soup)));
+        journal.append(List.of(new AddAxiom(ontology, oats)));
+        long complete = journal.size();
+        Files.writeString(file, "BEGIN 1\n+ SubClassOf(<" + BASE + "Sal", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        OWLOntology replayed = manager.createOntology();
+        assertEquals(2, journal.replay(manager, replayed));
+        assertTrue(replayed.containsAxiom(soup));
+        assertTrue(replayed.containsAxiom(oats));
+        assertEquals(complete, journal.size());
+    }
+
+    private static OWLAxiom subClass(OWLDataFactory factory, String subClass, String superClass) {
+        return factory.getOWLSubClassOfAxiom(factory.getOWLClass(IRI.create(BASE + subClass)),
+                factory.getOWLClass(IRI.create(BASE + superClass)));
+    }
+}
@@ -0,0 +1,161 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.dto.InferredPreferences;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.semanticweb.owlapi.model.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Creates food items from many threads while others read inferences, and checks that every committed item,
+ * and only those, ends up in the ontology and in the journal, with the same inferences as when created alone.
+ */
+class OntologyServiceConcurrencyTest {
+
+    private static final Path ONTOLOGY_FILE = Path.of("src/main/java/fit/health/fithealthapi/ontology/health.owl");
+    private static final int WRITERS = 8;
+    private static final int ITEMS_PER_WRITER = 6;
+    private static final int READERS = 4;
+    private static final int READS_PER_READER = 2;
+
+    @TempDir
+    Path directory;
+
+    private final List<OntologyPersistenceWriter> writers = new ArrayList<>();
+
+    @Test
+    void parallelCreatesAreSerialisedAndReadsStayConsistent() throws Exception {
+        Path file = directory.resolve("health.owl");
+        Files.copy(ONTOLOGY_FILE, file);
+        OntologyService ontologyService = createOntologyService(file);
+
+        createFoodItem(ontologyService, "Reference_Low", 20f, 0.1f, "Allergen_Free");
+        createFoodItem(ontologyService, "Reference_High", 450f, 35f, "Dairy");
+        InferredPreferences low = ontologyService.inferPreferences("Reference_Low");
+        InferredPreferences high = ontologyService.inferPreferences("Reference_High");
+        String catalogueItem = ontologyService.getFragment(ontologyService.getOntology()
+                .getSubClassAxiomsForSuperClass(ontologyService.getOWLClass("FoodItem")).stream()
+                .map(axiom -> axiom.getSubClass().asOWLClass().getIRI().toString())
+                .sorted()
+                .findFirst()
+                .orElseThrow());
+        Set<String> catalogueSuperClasses = ontologyService.getSuperClasses(catalogueItem);
+        assertTrue(catalogueSuperClasses.contains("FoodItem"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        Set<String> committed = ConcurrentHashMap.newKeySet();
+        Set<String> rolledBack = ConcurrentHashMap.newKeySet();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            int writerIndex = writer;
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int item = 0; item < ITEMS_PER_WRITER; item++) {
+                    String name = "Parallel_Item_" + writerIndex + "_" + item;
+                    boolean isLow = (writerIndex + item) % 2 == 0;
+                    if (item % 4 == 3) {
+                        // Closed without commit, must leave nothing behind
+                        OntologyChangeSet changeSet = ontologyService.beginChangeSet();
+                        try {
+                            addFoodItem(ontologyService, name, 100f, 5f, "Meat");
+                        } finally {
+                            changeSet.close();
+                        }
+                        rolledBack.add(name);
+                        continue;
+                    }
+                    if (isLow) {
+                        createFoodItem(ontologyService, name, 20f, 0.1f, "Allergen_Free");
+                    } else {
+                        createFoodItem(ontologyService, name, 450f, 35f, "Dairy");
+                    }
+                    assertSamePreferences(isLow ? low : high, ontologyService.inferPreferences(name), name);
+                    committed.add(name);
+                }
+                return null;
+            }));
+        }
+        for (int reader = 0; reader < READERS; reader++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int read = 0; read < READS_PER_READER; read++) {
+                    assertEquals(catalogueSuperClasses, ontologyService.getSuperClasses(catalogueItem));
+                    assertSamePreferences(low, ontologyService.inferPreferences("Reference_Low"), "Reference_Low");
+                    assertSamePreferences(high, ontologyService.inferPreferences("Reference_High"), "Reference_High");
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(5, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        OWLOntology ontology = ontologyService.getOntology();
+        assertEquals(WRITERS * (ITEMS_PER_WRITER - ITEMS_PER_WRITER / 4), committed.size());
+        for (String name : committed) {
+            // FoodItem, five values and the allergen, plus the definition made of them
+            assertEquals(8, ontology.getAxioms(ontologyService.getOWLClass(name)).size(), name);
+        }
+        for (String name : rolledBack) {
+            assertTrue(ontology.getAxioms(ontologyService.getOWLClass(name)).isEmpty(), name);
+        }
+
+        // The file has not been written yet, so a second instance rebuilds the ontology from the journal alone
+        OntologyService replayed = createOntologyService(file);
+        assertEquals(ontology.getLogicalAxioms(), replayed.getOntology().getLogicalAxioms());
+    }
+
+    private static void assertSamePreferences(InferredPreferences expected, InferredPreferences actual, String name) {
+        assertEquals(expected.getDietaryPreferences(), actual.getDietaryPreferences(), name);
+        assertEquals(expected.getHealthConditionSuitabilities(), actual.getHealthConditionSuitabilities(), name);
+    }
+
+    @AfterEach
+    void stopWriters() {
+        // Pending writes would otherwise fire after the temporary directory is gone
+        writers.forEach(OntologyPersistenceWriter::shutdown);
+    }
+
+    private OntologyService createOntologyService(Path file) {
+        OntologyPersistenceWriter writer = new OntologyPersistenceWriter(60_000);
+        writers.add(writer);
+        return new OntologyService(writer, new OntologyJournal(1 << 24),
+                new OntologySnapshotStore(false), new InferredTaxonomyCache(false),
+                new InferredPreferencesCache(new SimpleMeterRegistry()), List.of(new HermitPreferenceReasoner()), "hermit",
+                file.toString(), "incremental", false, 1_000);
+    }
+
+    private static void createFoodItem(OntologyService ontologyService, String name, float calories, float fat,
+                                       String allergen) {
+        try (OntologyChangeSet changeSet = ontologyService.beginChangeSet()) {
+            addFoodItem(ontologyService, name, calories, fat, allergen);
+            changeSet.commit();
+        }
+    }
+
+    /**
+     * Mirrors how {@code FoodItemService} defines a food item.
+     */
+    private static void addFoodItem(OntologyService ontologyService, String name, float calories, float fat,
+                                    String allergen) {
+        ontologyService.createItemType(name, "FoodItem");
+        ontologyService.addDataPropertyRestriction(name, "caloriesPer100gram", calories);
+        ontologyService.addDataPropertyRestriction(name, "proteinContent", 2f);
+        ontologyService.addDataPropertyRestriction(name, "fatContent", fat);
+        ontologyService.addDataPropertyRestriction(name, "sugarContent", 1f);
+        ontologyService.addDataPropertyRestriction(name, "saltContent", 0.1f);
+        ontologyService.addObjectPropertyRestriction(name, "hasAllergen", allergen);
+        ontologyService.convertToDefinedClass(name);
+    }
+}
@@ -0,0 +1,131 @@
+package fit.health.fithealthapi.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fit.health.fithealthapi.model.*;
+import fit.health.fithealthapi.model.dto.RecipeSearchRequest;
+import fit.health.fithealthapi.model.dto.RecipeSummary;
+import fit.health.fithealthapi.model.enums.Allergen;
+import fit.health.fithealthapi.model.enums.DietaryPreference;
+import fit.health.fithealthapi.model.enums.RecipeType;
+import fit.health.fithealthapi.model.enums.Unit;
+import fit.health.fithealthapi.repository.FoodItemRepository;
+import fit.health.fithealthapi.repository.RecipeRepository;
+import fit.health.fithealthapi.repository.UserRepository;
+import fit.health.fithealthapi.utils.EnumMasks;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that searching and listing recipes, then writing them out as a response, runs as many SQL statements
+ * for a page of two recipes as for a page of forty, and that the summaries match their recipes.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:recipe-loading;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class RecipeLoadingStatementsTest {
+
+    @Autowired
+    private RecipeService recipeService;
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private FoodItemRepository foodItemRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void loadsAPageOfRecipesInAConstantNumberOfStatements() {
+        User owner = new User();
+        owner.setUsername("loading-user");
+        owner.setPassword("password");
+        owner = userRepository.save(owner);
+        List<FoodItem> foodItems = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            FoodItem foodItem = new FoodItem();
+            foodItem.setName("Loading item " + i);
+            foodItem.setMacronutrients(new Macronutrients());
+            foodItem.setOwner(owner);
+            foodItems.add(foodItemRepository.save(foodItem));
+        }
+        for (int i = 0; i < 40; i++) {
+            Recipe recipe = new Recipe();
+            recipe.setName("Loading recipe " + i);
+            recipe.setPreparationTime(5);
+            recipe.setCookingTime(10);
+            recipe.setServingSize(1);
+            recipe.setOwner(owner);
+            recipe.setMacronutrients(new Macronutrients());
+            recipe.setDietaryPreferences(Set.of(DietaryPreference.values()[i % DietaryPreference.values().length]));
+            recipe.setAllergens(Set.of(Allergen.values()[i % Allergen.values().length]));
+            recipe.setRecipeTypes(Set.of(RecipeType.values()[i % RecipeType.values().length],
+                    RecipeType.values()[(i + 1) % RecipeType.values().length]));
+            Set<RecipeIngredient> ingredients = new HashSet<>();
+            for (int j = 0; j < 3; j++) {
+                RecipeIngredient ingredient = new RecipeIngredient();
+                ingredient.setFoodItem(foodItems.get((i + j) % foodItems.size()));
+                ingredient.setQuantity(100f);
+                ingredient.setUnit(Unit.values()[0]);
+                ingredients.add(ingredient);
+            }
+            recipe.setIngredients(ingredients);
+            recipeRepository.save(recipe);
+        }
+
+        // Unmeasured, so that loading the like counts on first use is not counted against the first page
+        statements(() -> search(2));
+        statements(() -> recipeService.getAllWithFilters(Map.of(), "id", "ASC", 0, 1));
+        assertEquals(statements(() -> search(2)), statements(() -> search(40)));
+        assertEquals(statements(() -> recipeService.getAllWithFilters(Map.of(), "id", "ASC", 0, 1)),
+                statements(() -> recipeService.getAllWithFilters(Map.of(), "id", "ASC", 0, 39)));
+
+        for (RecipeSummary summary : recipeService.getAllWithFilters(Map.of(), "id", "DESC", 0, 39)) {
+            Recipe recipe = recipeService.getRecipeById(summary.getId());
+            assertEquals(recipe.getName(), summary.getName());
+            assertEquals(15, summary.getTotalTime());
+            assertEquals(recipe.getDietaryPreferencesMask(), summary.getDietaryPreferencesMask());
+            assertEquals(recipe.getAllergensMask(), summary.getAllergensMask());
+            assertEquals(EnumMasks.toMask(recipe.getRecipeTypes()), summary.getRecipeTypesMask());
+        }
+    }
+
+    private List<RecipeSummary> search(int limit) {
+        RecipeSearchRequest request = new RecipeSearchRequest();
+        request.setLimit(limit);
+        List<RecipeSummary> recipes = recipeService.searchRecipes(request).getRecipes();
+        assertEquals(limit, recipes.size());
+        return recipes;
+    }
+
+    /**
+     * Counts the statements run to load the recipes and write them out, in one transaction as a request would.
+     */
+    private long statements(Supplier<List<RecipeSummary>> load) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            try {
+                objectMapper.writeValueAsString(load.get());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,124 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.Macronutrients;
+import fit.health.fithealthapi.model.Recipe;
+import fit.health.fithealthapi.model.dto.RecipeSearchRequest;
+import fit.health.fithealthapi.model.enums.DietaryPreference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that a top-K scan split over a pool finds the same recipes as the scan on the calling thread. With
+ * {@code -Dbenchmark=true}, also times both for growing catalogues and logs where the pool starts to pay off, which
+ * is what {@code recipes.search.parallel-threshold} should be set to on the machine before the pool is turned on.
+ * The timed search matches no recipe by name, so every slot in the calorie range is scanned.
+ */
+class RecipeSearchBenchmarkTest {
+
+    private static final Logger LOGGER = Logger.getLogger(RecipeSearchBenchmarkTest.class.getName());
+    private static final int[] SIZES = {1_000, 10_000, 50_000, 200_000};
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final Random random = new Random(11);
+    private final RecipeSearchIndex sequential = new RecipeSearchIndex();
+    private final RecipeSearchIndex parallel = new RecipeSearchIndex(THREADS, 0);
+
+    @Test
+    void parallelScanMatchesSequentialScan() {
+        RecipeSearchRequest request = new RecipeSearchRequest();
+        request.setDietaryPreferences(List.of(DietaryPreference.VEGETARIAN));
+        List<Recipe> recipes = new ArrayList<>();
+        for (int id = 1; id <= 20_000; id++) {
+            recipes.add(randomRecipe(id));
+        }
+        sequential.load(recipes);
+        parallel.load(recipes);
+
+        assertEquals(sequential.searchTop(request, List.of(), false, null, 10, id -> id % 7),
+                parallel.searchTop(request, List.of(), false, null, 10, id -> id % 7));
+        // Merged partial results agree with the sequential scan on pages that do match
+        List<Long> named = recipes.stream()
+                .filter(recipe -> recipe.getName().contains("Recipe 1"))
+                .map(Recipe::getId)
+                .toList();
+        for (boolean gaining : List.of(false, true)) {
+            RecipeSearchCursor after = null;
+            for (int page = 0; page < 5; page++) {
+                List<RecipeSearchCursor> expected = sequential.searchTop(request, named, gaining, after, 25, id -> id % 7);
+                assertEquals(expected, parallel.searchTop(request, named, gaining, after, 25, id -> id % 7));
+                after = expected.get(expected.size() - 1);
+            }
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void timesParallelAndSequentialScans() {
+        RecipeSearchRequest request = new RecipeSearchRequest();
+        request.setDietaryPreferences(List.of(DietaryPreference.VEGETARIAN));
+        StringBuilder report = new StringBuilder("Top-K scan on " + THREADS + " threads, best of 20 runs:");
+        // Smallest size from which the pool is faster at every larger size
+        Integer crossover = null;
+        List<Recipe> recipes = new ArrayList<>();
+        for (int size : SIZES) {
+            while (recipes.size() < size) {
+                recipes.add(randomRecipe(recipes.size() + 1));
+            }
+            sequential.load(recipes);
+            parallel.load(recipes);
+
+            assertEquals(sequential.searchTop(request, List.of(), false, null, 10, id -> id % 7),
+                    parallel.searchTop(request, List.of(), false, null, 10, id -> id % 7));
+            long sequentialNanos = best(sequential, request);
+            long parallelNanos = best(parallel, request);
+            report.append(String.format("%n  %,8d recipes: sequential %,7d us, parallel %,7d us", size,
+                    sequentialNanos / 1_000, parallelNanos / 1_000));
+            if (parallelNanos >= sequentialNanos) {
+                crossover = null;
+            } else if (crossover == null) {
+                crossover = size;
+            }
+        }
+        report.append(crossover == null ? "\n  The pool never pays off on this machine"
+                : "\n  The pool pays off from " + crossover + " recipes");
+        LOGGER.info(report.toString());
+    }
+
+    @AfterEach
+    void stopPool() {
+        parallel.shutdown();
+    }
+
+    private static long best(RecipeSearchIndex index, RecipeSearchRequest request) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 20; run++) {
+            long startTime = System.nanoTime();
+            index.searchTop(request, List.of(), false, null, 10, id -> id % 7);
+            best = Math.min(best, System.nanoTime() - startTime);
+        }
+        return best;
+    }
+
+    private Recipe randomRecipe(long id) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setName("Recipe " + random.nextInt(50));
+        recipe.setPreparationTime(random.nextInt(30));
+        recipe.setCookingTime(random.nextInt(60));
+        Macronutrients macronutrients = new Macronutrients();
+        macronutrients.setCalories((float) random.nextInt(800));
+        recipe.setMacronutrients(macronutrients);
+        Set<DietaryPreference> preferences = new HashSet<>();
+        if (random.nextBoolean()) {
+            preferences.add(DietaryPreference.VEGETARIAN);
+        }
+        recipe.setDietaryPreferences(preferences);
+        return recipe;
+    }
+}
@@ -0,0 +1,252 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.FoodItem;
+import fit.health.fithealthapi.model.Macronutrients;
+import fit.health.fithealthapi.model.Recipe;
+import fit.health.fithealthapi.model.RecipeIngredient;
+import fit.health.fithealthapi.model.dto.RecipeSearchRequest;
+import fit.health.fithealthapi.model.enums.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the index against the filters it replaced, applied one recipe at a time, over random recipes and
+ * random searches, and after updates, deletions and food item renames.
+ */
+class RecipeSearchIndexTest {
+
+    private final Random random = new Random(42);
+    private final List<FoodItem> foodItems = new ArrayList<>();
+    private final Map<Long, Recipe> recipes = new LinkedHashMap<>();
+    private final RecipeSearchIndex index = new RecipeSearchIndex();
+
+    @Test
+    void matchesFilteringEveryRecipe() {
+        createFoodItems(40);
+        for (long id = 1; id <= 2_000; id++) {
+            recipes.put(id, randomRecipe(id));
+        }
+        index.load(recipes.values());
+        assertSearchesMatch(300);
+
+        for (long id = 1; id <= 200; id++) {
+            Recipe updated = randomRecipe(id);
+            recipes.put(id, updated);
+            index.put(updated);
+        }
+        for (long id = 201; id <= 400; id++) {
+            recipes.remove(id);
+            index.remove(id);
+        }
+        for (long id = 2_001; id <= 2_100; id++) {
+            Recipe created = randomRecipe(id);
+            recipes.put(id, created);
+            index.put(created);
+        }
+        foodItems.get(0).setName("Renamed Item");
+        index.foodItemRenamed(foodItems.get(0).getId(), "Renamed Item");
+        FoodItem removed = foodItems.remove(1);
+        recipes.values().forEach(recipe -> recipe.getIngredients().removeIf(ingredient -> ingredient.getFoodItem() == removed));
+        index.foodItemRemoved(removed.getId());
+
+        assertEquals(recipes.size(), index.size());
+        assertSearchesMatch(300);
+        RecipeSearchRequest byOldName = new RecipeSearchRequest();
+        byOldName.setIngredientNames(List.of("item 0"));
+        assertTrue(index.search(byOldName, null).isEmpty());
+    }
+
+    @Test
+    void topRecipesMatchSortingEveryMatch() {
+        createFoodItems(40);
+        for (long id = 1; id <= 3_000; id++) {
+            Recipe recipe = randomRecipe(id);
+            // Few distinct values, so that many recipes tie on calories and time
+            recipe.getMacronutrients().setCalories(random.nextInt(20) * 50f);
+            recipe.setCookingTime(random.nextInt(3) * 10);
+            recipe.setPreparationTime(0);
+            recipes.put(id, recipe);
+        }
+        index.load(recipes.values());
+        Map<Long, Long> likes = new HashMap<>();
+        recipes.keySet().forEach(id -> likes.put(id, (long) random.nextInt(4)));
+
+        for (int i = 0; i < 100; i++) {
+            RecipeSearchRequest request = randomRequest();
+            request.setName(null);
+            boolean gaining = random.nextBoolean();
+            int count = 1 + random.nextInt(60);
+            Comparator<RecipeSearchCursor> order = RecipeSearchCursor.order(gaining);
+            List<RecipeSearchCursor> expected = recipes.values().stream()
+                    .filter(recipe -> matches(recipe, request))
+                    .map(recipe -> new RecipeSearchCursor(recipe.getMacronutrients().getCalories(),
+                            recipe.getPreparationTime() + recipe.getCookingTime(), likes.get(recipe.getId()), recipe.getId()))
+                    .sorted(order)
+                    .toList();
+
+            // Walks every page, each starting after the last recipe of the previous one
+            List<RecipeSearchCursor> found = new ArrayList<>();
+            RecipeSearchCursor after = null;
+            List<RecipeSearchCursor> page;
+            do {
+                page = index.searchTop(request, null, gaining, after, count, likes::get);
+                assertTrue(page.size() <= count);
+                found.addAll(page);
+                after = page.isEmpty() ? null : page.get(page.size() - 1);
+            } while (page.size() == count);
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    void searchesAHundredThousandRecipesInUnderAMillisecond() {
+        createFoodItems(500);
+        for (long id = 1; id <= 100_000; id++) {
+            recipes.put(id, randomRecipe(id));
+        }
+        index.load(recipes.values());
+        RecipeSearchRequest request = new RecipeSearchRequest();
+        request.setDietaryPreferences(List.of(DietaryPreference.VEGETARIAN));
+        request.setAllergens(List.of(Allergen.DAIRY));
+        request.setMinCalories(300f);
+        request.setMaxCalories(450f);
+        request.setMaxTotalTime(40f);
+        index.search(request, null);
+
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 50; run++) {
+            long startTime = System.nanoTime();
+            index.search(request, null);
+            best = Math.min(best, System.nanoTime() - startTime);
+        }
+        assertTrue(best < 1_000_000, "Best search took " + best / 1_000 + " µs");
+    }
+
+    private void assertSearchesMatch(int searches) {
+        for (int i = 0; i < searches; i++) {
+            RecipeSearchRequest request = randomRequest();
+            Set<Long> expected = recipes.values().stream()
+                    .filter(recipe -> matches(recipe, request))
+                    .map(Recipe::getId)
+                    .collect(Collectors.toSet());
+            assertEquals(expected, new HashSet<>(index.search(request, named(request))));
+        }
+    }
+
+    /**
+     * The recipes matching the name of the request, as found by {@link NameSearchIndex} for the service.
+     */
+    private List<Long> named(RecipeSearchRequest request) {
+        return request.getName() == null ? null : recipes.values().stream()
+                .filter(recipe -> recipe.getName().contains(request.getName()))
+                .map(Recipe::getId)
+                .toList();
+    }
+
+    /**
+     * The filters of {@code RecipeService.searchRecipes} before the index.
+     */
+    private static boolean matches(Recipe recipe, RecipeSearchRequest request) {
+        float totalTime = recipe.getPreparationTime() + recipe.getCookingTime();
+        return (request.getDietaryPreferences() == null || recipe.getDietaryPreferences().containsAll(request.getDietaryPreferences()))
+                && (request.getAllergens() == null || Collections.disjoint(recipe.getAllergens(), request.getAllergens()))
+                && (request.getConditionSuitability() == null || recipe.getHealthConditionSuitabilities().containsAll(request.getConditionSuitability()))
+                && ingredientsMatch(recipe, request)
+                && (request.getMinCalories() == null || recipe.getMacronutrients().getCalories() >= request.getMinCalories())
+                && (request.getMaxCalories() == null || recipe.getMacronutrients().getCalories() <= request.getMaxCalories())
+                && (request.getMaxTotalTime() == null || totalTime <= request.getMaxTotalTime())
+                && (request.getName() == null || recipe.getName().contains(request.getName()))
+                && (request.getRecipeTypes() == null || request.getRecipeTypes().isEmpty() || !Collections.disjoint(recipe.getRecipeTypes(), request.getRecipeTypes()));
+    }
+
+    private static boolean ingredientsMatch(Recipe recipe, RecipeSearchRequest request) {
+        List<String> names = request.getIngredientNames() == null ? List.of()
+                : request.getIngredientNames().stream().map(String::toLowerCase).toList();
+        List<Long> ids = request.getFoodItemIds() == null ? List.of() : request.getFoodItemIds();
+        if (request.getIngredientMatch() == IngredientMatch.ONLY) {
+            return (names.isEmpty() && ids.isEmpty()) || (!recipe.getIngredients().isEmpty()
+                    && recipe.getIngredients().stream().map(RecipeIngredient::getFoodItem).allMatch(foodItem ->
+                    ids.contains(foodItem.getId()) || names.contains(foodItem.getName().toLowerCase())));
+        }
+        return recipe.getIngredients().stream().map(ingredient -> ingredient.getFoodItem().getName().toLowerCase())
+                .collect(Collectors.toSet()).containsAll(names)
+                && recipe.getIngredients().stream().map(ingredient -> ingredient.getFoodItem().getId())
+                .collect(Collectors.toSet()).containsAll(ids);
+    }
+
+    private void createFoodItems(int count) {
+        for (long id = 1; id <= count; id++) {
+            FoodItem foodItem = new FoodItem();
+            foodItem.setId(id);
+            foodItem.setName("Item " + (id - 1));
+            foodItems.add(foodItem);
+        }
+    }
+
+    private Recipe randomRecipe(long id) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setName("Recipe " + random.nextInt(50));
+        recipe.setPreparationTime(random.nextInt(30));
+        recipe.setCookingTime(random.nextInt(60));
+        Macronutrients macronutrients = new Macronutrients();
+        macronutrients.setCalories((float) random.nextInt(800) + (random.nextBoolean() ? 0.5f : 0f));
+        recipe.setMacronutrients(macronutrients);
+        recipe.setDietaryPreferences(randomSubset(DietaryPreference.values()));
+        recipe.setAllergens(randomSubset(Allergen.values()));
+        recipe.setHealthConditionSuitabilities(randomSubset(HealthConditionSuitability.values()));
+        recipe.setRecipeTypes(randomSubset(RecipeType.values()));
+        Set<RecipeIngredient> ingredients = new HashSet<>();
+        for (int i = random.nextInt(5); i >= 0; i--) {
+            RecipeIngredient ingredient = new RecipeIngredient();
+            ingredient.setFoodItem(foodItems.get(random.nextInt(foodItems.size())));
+            ingredients.add(ingredient);
+        }
+        recipe.setIngredients(ingredients);
+        return recipe;
+    }
+
+    private RecipeSearchRequest randomRequest() {
+        RecipeSearchRequest request = new RecipeSearchRequest();
+        request.setDietaryPreferences(random.nextInt(3) == 0 ? null : new ArrayList<>(randomSubset(DietaryPreference.values(), 2)));
+        request.setAllergens(random.nextInt(3) == 0 ? null : new ArrayList<>(randomSubset(Allergen.values(), 2)));
+        request.setConditionSuitability(random.nextInt(3) == 0 ? null : new ArrayList<>(randomSubset(HealthConditionSuitability.values(), 1)));
+        request.setRecipeTypes(random.nextInt(3) == 0 ? null : new ArrayList<>(randomSubset(RecipeType.values(), 2)));
+        if (random.nextInt(3) == 0) {
+            // A pantry of many food items, some by name and some by ID
+            request.setIngredientMatch(IngredientMatch.ONLY);
+            List<FoodItem> pantry = new ArrayList<>(foodItems);
+            Collections.shuffle(pantry, random);
+            pantry = pantry.subList(0, random.nextInt(foodItems.size() / 2));
+            int byName = random.nextInt(pantry.size() + 1);
+            request.setIngredientNames(pantry.subList(0, byName).stream().map(FoodItem::getName).toList());
+            request.setFoodItemIds(pantry.subList(byName, pantry.size()).stream().map(FoodItem::getId).toList());
+        } else {
+            request.setIngredientNames(random.nextInt(2) == 0 ? null
+                    : List.of(foodItems.get(random.nextInt(foodItems.size())).getName().toUpperCase()));
+            request.setFoodItemIds(random.nextInt(3) == 0 ? null
+                    : List.of(foodItems.get(random.nextInt(foodItems.size())).getId()));
+        }
+        request.setMinCalories(random.nextBoolean() ? null : (float) random.nextInt(800));
+        request.setMaxCalories(random.nextBoolean() ? null : (float) random.nextInt(800) + 0.5f);
+        request.setMaxTotalTime(random.nextBoolean() ? null : (float) random.nextInt(90));
+        request.setName(random.nextInt(4) == 0 ? "Recipe " + random.nextInt(50) : null);
+        return request;
+    }
+
+    private <E extends Enum<E>> Set<E> randomSubset(E[] values) {
+        return randomSubset(values, values.length);
+    }
+
+    private <E extends Enum<E>> Set<E> randomSubset(E[] values, int maxSize) {
+        Set<E> subset = new HashSet<>();
+        for (int i = random.nextInt(maxSize + 1); i > 0; i--) {
+            subset.add(values[random.nextInt(values.length)]);
+        }
+        return subset;
+    }
+}
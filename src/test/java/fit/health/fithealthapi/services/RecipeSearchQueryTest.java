@@ -0,0 +1,220 @@
+package fit.health.fithealthapi.services;
+
+import fit.health.fithealthapi.model.*;
+import fit.health.fithealthapi.model.dto.RecipeSearchPage;
+import fit.health.fithealthapi.model.dto.RecipeSearchRequest;
+import fit.health.fithealthapi.model.enums.*;
+import fit.health.fithealthapi.repository.FoodItemRepository;
+import fit.health.fithealthapi.repository.RecipeRepository;
+import fit.health.fithealthapi.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Walks every page of random searches run by the database, also reads all their IDs at once, then checks that both
+ * hold exactly the recipes matching the request, in the order of {@link RecipeSearchCursor}, with many ties on
+ * calories and time and names matched regardless of case, accents and punctuation, and that the like counts kept by
+ * {@link ItemPopularityCounter} match the user preferences.
+ */
+// The common names match more recipes than are bound as parameters, the rarer ones fewer
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:recipe-search;DB_CLOSE_DELAY=-1",
+        "recipes.search.max-named-ids=20"})
+class RecipeSearchQueryTest {
+
+    private static final int PAGE_SIZE = 7;
+
+    @Autowired
+    private RecipeService recipeService;
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private FoodItemRepository foodItemRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserPreferenceService userPreferenceService;
+    @Autowired
+    private ItemPopularityCounter itemPopularityCounter;
+
+    private final Random random = new Random(7);
+    private final List<FoodItem> foodItems = new ArrayList<>();
+    private final List<Recipe> recipes = new ArrayList<>();
+    private final Map<Long, Long> likes = new HashMap<>();
+
+    @Test
+    void pagesMatchFilteringAndSortingEveryRecipe() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            User user = new User();
+            user.setUsername("search-user-" + i);
+            user.setPassword("password");
+            users.add(userRepository.save(user));
+        }
+        for (int i = 0; i < 15; i++) {
+            FoodItem foodItem = new FoodItem();
+            foodItem.setName("Item " + i);
+            foodItem.setMacronutrients(new Macronutrients());
+            foodItem.setOwner(users.get(0));
+            foodItems.add(foodItemRepository.save(foodItem));
+        }
+        for (int i = 0; i < 250; i++) {
+            recipes.add(recipeRepository.save(randomRecipe(users.get(0))));
+        }
+        for (Recipe recipe : recipes) {
+            for (User user : users) {
+                int choice = random.nextInt(6);
+                if (choice < 3) {
+                    userPreferenceService.dislike(user, UserItemType.RECIPE, recipe.getId());
+                }
+                if (choice < 2) {
+                    userPreferenceService.like(user, UserItemType.RECIPE, recipe.getId());
+                    likes.merge(recipe.getId(), 1L, Long::sum);
+                }
+            }
+        }
+        // The database orders on the counts flushed to the popularity table
+        itemPopularityCounter.flush();
+
+        for (int i = 0; i < 40; i++) {
+            assertSearchMatches(randomRequest());
+        }
+        // Names matching most recipes, with words of one or two letters or not
+        for (String name : List.of("L'OIGNON", "à", "ragout")) {
+            RecipeSearchRequest request = randomRequest();
+            request.setName(name);
+            assertSearchMatches(request);
+        }
+
+        itemPopularityCounter.reconcile();
+        for (Recipe recipe : recipes) {
+            assertEquals(likes.getOrDefault(recipe.getId(), 0L), itemPopularityCounter.getLikes(UserItemType.RECIPE, recipe.getId()));
+        }
+    }
+
+    private void assertSearchMatches(RecipeSearchRequest request) {
+        boolean gaining = request.getGoal() == Goal.GAIN_FAST;
+        Comparator<RecipeSearchCursor> order = RecipeSearchCursor.order(gaining);
+        List<Long> expected = recipes.stream()
+                .filter(recipe -> matches(recipe, request))
+                .map(this::cursor)
+                .sorted(order)
+                .map(RecipeSearchCursor::id)
+                .toList();
+
+        List<Long> found = new ArrayList<>();
+        RecipeSearchPage page;
+        do {
+            page = recipeService.searchRecipes(request);
+            assertTrue(page.getRecipes().size() <= PAGE_SIZE);
+            page.getRecipes().forEach(recipe -> found.add(recipe.getId()));
+            request.setCursor(page.getNextCursor());
+        } while (page.getNextCursor() != null);
+        assertEquals(expected, found);
+        assertEquals(expected, recipeService.searchRecipeIds(request));
+    }
+
+    private RecipeSearchCursor cursor(Recipe recipe) {
+        return new RecipeSearchCursor(recipe.getMacronutrients().getCalories(),
+                recipe.getPreparationTime() + recipe.getCookingTime(), likes.getOrDefault(recipe.getId(), 0L),
+                recipe.getId());
+    }
+
+    private static boolean matches(Recipe recipe, RecipeSearchRequest request) {
+        Set<String> ingredientNames = recipe.getIngredients().stream()
+                .map(ingredient -> ingredient.getFoodItem().getName().toLowerCase())
+                .collect(Collectors.toSet());
+        Set<Long> foodItemIds = recipe.getIngredients().stream()
+                .map(ingredient -> ingredient.getFoodItem().getId())
+                .collect(Collectors.toSet());
+        boolean ingredientsMatch = request.getIngredientMatch() == IngredientMatch.ONLY
+                ? !foodItemIds.isEmpty() && recipe.getIngredients().stream().allMatch(ingredient ->
+                        request.getFoodItemIds().contains(ingredient.getFoodItem().getId())
+                        || request.getIngredientNames().stream().anyMatch(ingredient.getFoodItem().getName()::equalsIgnoreCase))
+                : request.getIngredientNames().stream().map(String::toLowerCase).allMatch(ingredientNames::contains)
+                        && foodItemIds.containsAll(request.getFoodItemIds());
+        float totalTime = recipe.getPreparationTime() + recipe.getCookingTime();
+        return recipe.getDietaryPreferences().containsAll(request.getDietaryPreferences())
+                && Collections.disjoint(recipe.getAllergens(), request.getAllergens())
+                && recipe.getHealthConditionSuitabilities().containsAll(request.getConditionSuitability())
+                && ingredientsMatch
+                && (request.getMinCalories() == null || recipe.getMacronutrients().getCalories() >= request.getMinCalories())
+                && (request.getMaxCalories() == null || recipe.getMacronutrients().getCalories() <= request.getMaxCalories())
+                && (request.getMaxTotalTime() == null || totalTime <= request.getMaxTotalTime())
+                && (request.getName() == null || NameSearchIndex.fold(recipe.getName()).contains(NameSearchIndex.fold(request.getName())))
+                && (request.getRecipeTypes().isEmpty() || !Collections.disjoint(recipe.getRecipeTypes(), request.getRecipeTypes()));
+    }
+
+    private Recipe randomRecipe(User owner) {
+        Recipe recipe = new Recipe();
+        recipe.setName((random.nextBoolean() ? "Soupe à l'oignon " : "Ragoût-") + random.nextInt(10));
+        recipe.setPreparationTime(random.nextInt(4) * 5);
+        recipe.setCookingTime(random.nextInt(4) * 10);
+        recipe.setServingSize(1);
+        recipe.setOwner(owner);
+        Macronutrients macronutrients = new Macronutrients();
+        macronutrients.setCalories(random.nextInt(8) * 100f + (random.nextInt(4) == 0 ? 0.5f : 0f));
+        recipe.setMacronutrients(macronutrients);
+        recipe.setDietaryPreferences(randomSubset(DietaryPreference.values(), 5));
+        recipe.setAllergens(randomSubset(Allergen.values(), 3));
+        recipe.setHealthConditionSuitabilities(randomSubset(HealthConditionSuitability.values(), 3));
+        recipe.setRecipeTypes(randomSubset(RecipeType.values(), 2));
+        Set<RecipeIngredient> ingredients = new HashSet<>();
+        for (FoodItem foodItem : randomSubset(foodItems, 3)) {
+            RecipeIngredient ingredient = new RecipeIngredient();
+            ingredient.setFoodItem(foodItem);
+            ingredient.setQuantity(100f);
+            ingredient.setUnit(Unit.values()[0]);
+            ingredients.add(ingredient);
+        }
+        recipe.setIngredients(ingredients);
+        return recipe;
+    }
+
+    private RecipeSearchRequest randomRequest() {
+        RecipeSearchRequest request = new RecipeSearchRequest();
+        request.setLimit(PAGE_SIZE);
+        request.setGoal(random.nextBoolean() ? Goal.GAIN_FAST : null);
+        request.setDietaryPreferences(new ArrayList<>(randomSubset(DietaryPreference.values(), random.nextInt(2))));
+        request.setAllergens(new ArrayList<>(randomSubset(Allergen.values(), random.nextInt(2))));
+        request.setConditionSuitability(new ArrayList<>(randomSubset(HealthConditionSuitability.values(), random.nextInt(2))));
+        request.setRecipeTypes(new ArrayList<>(randomSubset(RecipeType.values(), random.nextInt(3))));
+        if (random.nextInt(4) == 0) {
+            // Recipes cooked from a pantry of food items, by name and by ID
+            request.setIngredientMatch(IngredientMatch.ONLY);
+            request.setIngredientNames(randomSubset(foodItems, 5).stream().map(FoodItem::getName).toList());
+            request.setFoodItemIds(randomSubset(foodItems, 5).stream().map(FoodItem::getId).toList());
+            if (request.getIngredientNames().isEmpty() && request.getFoodItemIds().isEmpty()) {
+                request.setFoodItemIds(List.of(foodItems.get(0).getId()));
+            }
+        } else {
+            request.setIngredientNames(random.nextInt(3) == 0
+                    ? List.of(foodItems.get(random.nextInt(foodItems.size())).getName().toUpperCase()) : List.of());
+            request.setFoodItemIds(random.nextInt(4) == 0
+                    ? List.of(foodItems.get(random.nextInt(foodItems.size())).getId()) : List.of());
+        }
+        request.setMinCalories(random.nextBoolean() ? null : random.nextInt(8) * 100f);
+        request.setMaxCalories(random.nextBoolean() ? null : random.nextInt(8) * 100f + 0.5f);
+        request.setMaxTotalTime(random.nextBoolean() ? null : random.nextInt(60) + 0.5f);
+        request.setName(random.nextInt(4) == 0 ? (random.nextBoolean() ? "L'OIGNON" : "ragout " + random.nextInt(10)) : null);
+        return request;
+    }
+
+    private <E extends Enum<E>> Set<E> randomSubset(E[] values, int maxSize) {
+        return new HashSet<>(randomSubset(Arrays.asList(values), maxSize));
+    }
+
+    private <T> Set<T> randomSubset(List<T> values, int maxSize) {
+        Set<T> subset = new HashSet<>();
+        for (int i = random.nextInt(maxSize + 1); i > 0; i--) {
+            subset.add(values.get(random.nextInt(values.size())));
+        }
+        return subset;
+    }
+}